@@ -24,6 +24,12 @@ public class ChunkPos {
     public int getZ() { return z; }
 
     public String id() { return world + ":" + x + ":" + z; }
+    public long key() { return key(x, z); }
+
+    // Packs chunk x/z into one long for the primitive ownership index.
+    public static long key(int x, int z) { return ((long) x << 32) | (z & 0xFFFFFFFFL); }
+    public static int keyX(long key) { return (int) (key >> 32); }
+    public static int keyZ(long key) { return (int) key; }
 
     @Override
     public boolean equals(Object o) {
@@ -0,0 +1,183 @@
+package io.github.e1ixyz.visualclaims;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Admin-triggered micro benchmarks run against the live claim index (/claimbench).
+public class ClaimBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 20;
+    private static final int STORAGE_WARMUP_ROUNDS = 2;
+    private static final int STORAGE_MEASURED_ROUNDS = 5;
+
+    private final TownManager towns;
+
+    public ClaimBenchmark(TownManager towns) {
+        this.towns = towns;
+    }
+
+    public List<String> explosion(Location center, int blockCount) {
+        List<String> out = new ArrayList<>();
+        List<Block> blocks = sampleCube(center, blockCount);
+        Set<Long> chunks = new HashSet<>();
+        int claimed = 0;
+        for (Block b : blocks) {
+            chunks.add(ChunkPos.key(b.getX() >> 4, b.getZ() >> 4));
+            if (towns.getOwnerAt(b.getWorld().getName(), b.getX() >> 4, b.getZ() >> 4) != null) claimed++;
+        }
+        long perBlock = time(blocks, this::perBlockFilter);
+        long batched = time(blocks, list -> towns.filterProtectedBlocks(list, null));
+        out.add("§eExplosion filter: §f" + blocks.size() + " §eblocks over §f" + chunks.size() + " §echunks (§f" + claimed + " §eclaimed)");
+        out.add("§7Per-block: §f" + formatNanos(perBlock) + " §7/ explosion (§f" + (perBlock / Math.max(1, blocks.size())) + " ns§7/block)");
+        out.add("§7Batched:   §f" + formatNanos(batched) + " §7/ explosion (§f" + (batched / Math.max(1, blocks.size())) + " ns§7/block)");
+        if (batched > 0) {
+            out.add("§7Speedup: §a" + String.format("%.1fx", perBlock / (double) batched));
+        }
+        return out;
+    }
+
+    // Encodes/decodes every loaded town in each format in memory and checks the binary round trip.
+    public List<String> storage() {
+        List<String> out = new ArrayList<>();
+        List<Town> all = new ArrayList<>(towns.allTowns());
+        if (all.isEmpty()) {
+            out.add("§cNo towns loaded.");
+            return out;
+        }
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        int claims = 0;
+        for (Town t : all) claims += t.claimCount();
+        out.add("§eTown storage: §f" + all.size() + " §etowns, §f" + claims + " §eclaims");
+        long[] jsonStats = null;
+        for (TownFormat format : TownFormat.values()) {
+            long[] stats;
+            try {
+                stats = measureFormat(format, all, gson);
+            } catch (IOException ex) {
+                out.add("§c" + format + " failed: " + ex.getMessage());
+                continue;
+            }
+            if (format == TownFormat.JSON) jsonStats = stats;
+            String size = String.format("%.1f KB", stats[2] / 1024.0d);
+            if (jsonStats != null && format != TownFormat.JSON && jsonStats[2] > 0) {
+                size += String.format(" (%.0f%% of JSON)", stats[2] * 100.0d / jsonStats[2]);
+            }
+            out.add("§7" + format + ": §fsave " + formatNanos(stats[0]) + "§7, load §f" + formatNanos(stats[1]) + "§7, size §f" + size);
+        }
+        int mismatches = 0;
+        for (Town t : all) {
+            try {
+                Town back = TownFormat.BINARY.decode(TownFormat.BINARY.encode(t, gson), gson);
+                if (!sameTown(t, back)) mismatches++;
+            } catch (IOException ex) {
+                mismatches++;
+            }
+        }
+        out.add(mismatches == 0 ? "§aBinary round trip is lossless for all towns." : "§cBinary round trip differs for §e" + mismatches + "§c towns.");
+        return out;
+    }
+
+    // {save nanos, load nanos, total bytes} averaged over the measured rounds.
+    private long[] measureFormat(TownFormat format, List<Town> all, Gson gson) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(all.size());
+        long bytes = 0L;
+        for (Town t : all) {
+            byte[] data = format.encode(t, gson);
+            encoded.add(data);
+            bytes += data.length;
+        }
+        for (int i = 0; i < STORAGE_WARMUP_ROUNDS; i++) {
+            for (Town t : all) format.encode(t, gson);
+            for (byte[] data : encoded) format.decode(data, gson);
+        }
+        long save = 0L;
+        long load = 0L;
+        for (int i = 0; i < STORAGE_MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            for (Town t : all) format.encode(t, gson);
+            save += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (byte[] data : encoded) format.decode(data, gson);
+            load += System.nanoTime() - start;
+        }
+        return new long[]{save / STORAGE_MEASURED_ROUNDS, load / STORAGE_MEASURED_ROUNDS, bytes};
+    }
+
+    static boolean sameTown(Town a, Town b) {
+        return Objects.equals(a.getOwner(), b.getOwner())
+                && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getWorld(), b.getWorld())
+                && Objects.equals(a.getColorName(), b.getColorName())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && a.getBonusChunks() == b.getBonusChunks()
+                && a.getContestedClaimsSpent() == b.getContestedClaimsSpent()
+                && a.getKills() == b.getKills()
+                && a.getReputation() == b.getReputation()
+                && a.isReputationInitialized() == b.isReputationInitialized()
+                && a.getCreatedAt() == b.getCreatedAt()
+                && a.getCapitalSetAt() == b.getCapitalSetAt()
+                && a.getJournalSeq() == b.getJournalSeq()
+                && a.getClaims().equals(b.getClaims())
+                && a.getCapitalClaims().equals(b.getCapitalClaims())
+                && a.getMembers().equals(b.getMembers())
+                && a.getAllies().equals(b.getAllies())
+                && a.getWars().equals(b.getWars());
+    }
+
+    // Mirrors the previous onTntExplode loop: Chunk fetch + lookup + iterator removal per block.
+    private void perBlockFilter(List<Block> blocks) {
+        Iterator<Block> it = blocks.iterator();
+        while (it.hasNext()) {
+            Block block = it.next();
+            if (block == null) continue;
+            if (towns.getTownAt(block.getChunk()).isPresent()) it.remove();
+        }
+    }
+
+    private long time(List<Block> blocks, Consumer<List<Block>> filter) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) filter.accept(new ArrayList<>(blocks));
+        long total = 0L;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            List<Block> copy = new ArrayList<>(blocks);
+            long start = System.nanoTime();
+            filter.accept(copy);
+            total += System.nanoTime() - start;
+        }
+        return total / MEASURED_ROUNDS;
+    }
+
+    private List<Block> sampleCube(Location center, int blockCount) {
+        World world = center.getWorld();
+        int side = Math.max(1, (int) Math.ceil(Math.cbrt(blockCount)));
+        int half = side / 2;
+        int cx = center.getBlockX();
+        int cy = center.getBlockY();
+        int cz = center.getBlockZ();
+        List<Block> blocks = new ArrayList<>(blockCount);
+        for (int dx = 0; dx < side && blocks.size() < blockCount; dx++) {
+            for (int dz = 0; dz < side && blocks.size() < blockCount; dz++) {
+                for (int dy = 0; dy < side && blocks.size() < blockCount; dy++) {
+                    blocks.add(world.getBlockAt(cx + dx - half, cy + dy - half, cz + dz - half));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos >= 1_000_000L) return String.format("%.2f ms", nanos / 1_000_000.0d);
+        return String.format("%.1f µs", nanos / 1_000.0d);
+    }
+}
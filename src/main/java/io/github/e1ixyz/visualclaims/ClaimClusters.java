@@ -0,0 +1,207 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Incremental union-find over a town's claims; 4-neighbour adjacency within a world.
+// Removals only mark their cluster dirty; the next query re-explores just those clusters.
+public class ClaimClusters {
+    private static final int[][] DIRS = { {1,0}, {-1,0}, {0,1}, {0,-1} };
+
+    private final Map<String, LongObjectMap<Node>> nodes = new HashMap<>();
+    private final Set<Node> roots = new HashSet<>();
+    private final Set<Node> dirtyRoots = new HashSet<>();
+    private int clusterCount;
+    private int epoch;
+    private long version;
+    private long localRecomputes;
+
+    private static final class Node {
+        private final ChunkPos pos;
+        private Node parent = this;
+        private int size = 1;
+        private List<Node> members; // only set on roots
+        private boolean removed;
+        private int seen;
+
+        private Node(ChunkPos pos) {
+            this.pos = pos;
+        }
+    }
+
+    public static ClaimClusters of(Collection<ChunkPos> claims) {
+        ClaimClusters clusters = new ClaimClusters();
+        if (claims != null) {
+            for (ChunkPos pos : claims) clusters.add(pos);
+        }
+        return clusters;
+    }
+
+    // Bumped on every add/remove; lets callers tell whether cached cluster data is stale.
+    public long version() { return version; }
+    public long localRecomputes() { return localRecomputes; }
+    public int pendingRecomputes() { return dirtyRoots.size(); }
+
+    public int clusterCount() {
+        settle();
+        return clusterCount;
+    }
+
+    public void add(ChunkPos pos) {
+        if (pos == null) return;
+        settle();
+        LongObjectMap<Node> world = nodes.computeIfAbsent(pos.getWorld(), k -> new LongObjectMap<>());
+        if (world.containsKey(pos.key())) return;
+        Node node = new Node(pos);
+        node.members = new ArrayList<>(1);
+        node.members.add(node);
+        world.put(pos.key(), node);
+        roots.add(node);
+        clusterCount++;
+        version++;
+        for (int[] d : DIRS) {
+            Node neighbor = world.get(ChunkPos.key(pos.getX() + d[0], pos.getZ() + d[1]));
+            if (neighbor != null) union(node, neighbor);
+        }
+    }
+
+    public void remove(ChunkPos pos) {
+        if (pos == null) return;
+        LongObjectMap<Node> world = nodes.get(pos.getWorld());
+        if (world == null) return;
+        Node node = world.remove(pos.key());
+        if (node == null) return;
+        node.removed = true;
+        dirtyRoots.add(find(node));
+        version++;
+    }
+
+    // True when pos borders (4-way) a chunk already in one of the clusters.
+    public boolean isAdjacent(ChunkPos pos) {
+        if (pos == null) return false;
+        LongObjectMap<Node> world = nodes.get(pos.getWorld());
+        if (world == null) return false;
+        for (int[] d : DIRS) {
+            if (world.containsKey(ChunkPos.key(pos.getX() + d[0], pos.getZ() + d[1]))) return true;
+        }
+        return false;
+    }
+
+    public boolean sameCluster(ChunkPos a, ChunkPos b) {
+        settle();
+        Node na = node(a);
+        Node nb = node(b);
+        return na != null && nb != null && find(na) == find(nb);
+    }
+
+    public int clusterSize(ChunkPos pos) {
+        settle();
+        Node n = node(pos);
+        return n == null ? 0 : find(n).size;
+    }
+
+    public Set<ChunkPos> cluster(ChunkPos pos) {
+        settle();
+        Node n = node(pos);
+        if (n == null) return new HashSet<>();
+        return positions(find(n));
+    }
+
+    public List<Set<ChunkPos>> clusters() {
+        settle();
+        List<Set<ChunkPos>> out = new ArrayList<>(roots.size());
+        for (Node root : roots) out.add(positions(root));
+        return out;
+    }
+
+    private Set<ChunkPos> positions(Node root) {
+        Set<ChunkPos> out = new HashSet<>(Math.max(16, root.size * 4 / 3 + 1));
+        for (Node m : root.members) out.add(m.pos);
+        return out;
+    }
+
+    private Node node(ChunkPos pos) {
+        if (pos == null) return null;
+        LongObjectMap<Node> world = nodes.get(pos.getWorld());
+        return world == null ? null : world.get(pos.key());
+    }
+
+    private Node find(Node n) {
+        while (n.parent != n) {
+            n.parent = n.parent.parent;
+            n = n.parent;
+        }
+        return n;
+    }
+
+    private void union(Node a, Node b) {
+        Node ra = find(a);
+        Node rb = find(b);
+        if (ra == rb) return;
+        if (ra.size < rb.size) {
+            Node tmp = ra;
+            ra = rb;
+            rb = tmp;
+        }
+        rb.parent = ra;
+        ra.size += rb.size;
+        ra.members.addAll(rb.members);
+        rb.members = null;
+        roots.remove(rb);
+        clusterCount--;
+    }
+
+    // Re-explore only the clusters that lost a chunk since the last query.
+    private void settle() {
+        if (dirtyRoots.isEmpty()) return;
+        for (Node oldRoot : dirtyRoots) {
+            List<Node> members = oldRoot.members;
+            roots.remove(oldRoot);
+            clusterCount--;
+            localRecomputes++;
+            List<Node> live = new ArrayList<>(members.size());
+            for (Node m : members) {
+                if (m.removed) continue;
+                m.parent = m;
+                m.size = 1;
+                m.members = null;
+                live.add(m);
+            }
+            oldRoot.members = null;
+            int mark = ++epoch;
+            Deque<Node> stack = new ArrayDeque<>();
+            for (Node start : live) {
+                if (start.seen == mark) continue;
+                List<Node> cluster = new ArrayList<>();
+                start.seen = mark;
+                stack.push(start);
+                LongObjectMap<Node> world = nodes.get(start.pos.getWorld());
+                while (!stack.isEmpty()) {
+                    Node cur = stack.pop();
+                    cur.parent = start;
+                    cluster.add(cur);
+                    for (int[] d : DIRS) {
+                        Node neighbor = world.get(ChunkPos.key(cur.pos.getX() + d[0], cur.pos.getZ() + d[1]));
+                        if (neighbor != null && neighbor.seen != mark) {
+                            neighbor.seen = mark;
+                            stack.push(neighbor);
+                        }
+                    }
+                }
+                start.size = cluster.size();
+                start.members = cluster;
+                roots.add(start);
+                clusterCount++;
+            }
+        }
+        dirtyRoots.clear();
+    }
+}
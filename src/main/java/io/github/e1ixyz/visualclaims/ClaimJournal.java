@@ -0,0 +1,245 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+// Append-only log of claim, membership and diplomacy changes (one tab-separated record per line).
+// Each town snapshot stores the last sequence it reflects, so replay only applies newer records.
+public class ClaimJournal {
+    private static final int COMPACT_AFTER_RECORDS = 4096;
+
+    private final VisualClaims plugin;
+    private final File file;
+    private final Executor io;
+    private long seq = 0L;
+    private int sinceCompaction = 0;
+    // owners whose snapshot on disk is behind the journal
+    private final Set<UUID> touched = new HashSet<>();
+    private Writer out; // only used on the I/O thread
+
+    public ClaimJournal(VisualClaims plugin, File file, Executor io) {
+        this.plugin = plugin;
+        this.file = file;
+        this.io = io;
+    }
+
+    public long lastSeq() { return seq; }
+    public boolean hasRecords() { return sinceCompaction > 0; }
+    public boolean shouldCompact() { return sinceCompaction >= COMPACT_AFTER_RECORDS; }
+
+    // Owners to snapshot before the journal can be truncated.
+    public Set<UUID> drainTouched() {
+        Set<UUID> out = new HashSet<>(touched);
+        touched.clear();
+        sinceCompaction = 0;
+        return out;
+    }
+
+    // Puts an owner back on the list after its snapshot failed, so the next compaction saves it again.
+    public void retouch(UUID owner) {
+        if (touched.add(owner)) sinceCompaction++;
+    }
+
+    public void claim(Town t, ChunkPos pos) {
+        append(t.getOwner(), null, "C", t.getOwner().toString(), pos.getWorld(), Integer.toString(pos.getX()), Integer.toString(pos.getZ()));
+    }
+
+    public void unclaim(Town t, ChunkPos pos) {
+        append(t.getOwner(), null, "U", t.getOwner().toString(), pos.getWorld(), Integer.toString(pos.getX()), Integer.toString(pos.getZ()));
+    }
+
+    public void transfer(Town from, Town to, ChunkPos pos) {
+        append(from.getOwner(), to.getOwner(), "T", from.getOwner().toString(), to.getOwner().toString(), pos.getWorld(), Integer.toString(pos.getX()), Integer.toString(pos.getZ()));
+    }
+
+    public void memberAdded(Town t, UUID member) {
+        append(t.getOwner(), null, "M+", t.getOwner().toString(), member.toString());
+    }
+
+    public void memberRemoved(Town t, UUID member) {
+        append(t.getOwner(), null, "M-", t.getOwner().toString(), member.toString());
+    }
+
+    public void allied(Town a, Town b) {
+        append(a.getOwner(), b.getOwner(), "A+", a.getOwner().toString(), b.getOwner().toString());
+    }
+
+    public void allianceRemoved(Town a, Town b) {
+        append(a.getOwner(), b.getOwner(), "A-", a.getOwner().toString(), b.getOwner().toString());
+    }
+
+    public void warDeclared(Town a, Town b) {
+        append(a.getOwner(), b.getOwner(), "W+", a.getOwner().toString(), b.getOwner().toString());
+    }
+
+    public void warEnded(Town a, Town b) {
+        append(a.getOwner(), b.getOwner(), "W-", a.getOwner().toString(), b.getOwner().toString());
+    }
+
+    public void townDeleted(UUID owner) {
+        append(null, null, "D", owner.toString());
+    }
+
+    private void append(UUID ownerA, UUID ownerB, String op, String... fields) {
+        seq++;
+        sinceCompaction++;
+        if (ownerA != null) touched.add(ownerA);
+        if (ownerB != null) touched.add(ownerB);
+        StringBuilder sb = new StringBuilder(64).append(seq).append('\t').append(op);
+        for (String f : fields) sb.append('\t').append(f);
+        String line = sb.append('\n').toString();
+        io.execute(() -> write(line));
+    }
+
+    private void write(String line) {
+        try {
+            if (out == null) out = new BufferedWriter(new FileWriter(file, true));
+            out.write(line);
+            out.flush();
+        } catch (IOException ex) {
+            plugin.getLogger().severe("Failed to append to claim journal: " + ex.getMessage());
+        }
+    }
+
+    // I/O thread: drops every record; callers must have queued fresh snapshots first.
+    void truncate() {
+        close();
+        try {
+            new FileWriter(file, false).close();
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to truncate claim journal: " + ex.getMessage());
+        }
+    }
+
+    // I/O thread.
+    void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to close claim journal: " + ex.getMessage());
+        }
+        out = null;
+    }
+
+    // Applies records newer than each town's snapshot; returns how many records the journal held.
+    public int replay(Map<UUID, Town> towns) {
+        touched.clear();
+        long maxSeq = 0L;
+        for (Town t : towns.values()) maxSeq = Math.max(maxSeq, t.getJournalSeq());
+        int records = 0;
+        if (file.exists()) {
+            try (BufferedReader r = new BufferedReader(new FileReader(file))) {
+                String line;
+                int lineNo = 0;
+                while ((line = r.readLine()) != null) {
+                    lineNo++;
+                    if (line.isEmpty()) continue;
+                    try {
+                        String[] f = line.split("\t");
+                        long recordSeq = Long.parseLong(f[0]);
+                        apply(towns, recordSeq, f);
+                        maxSeq = Math.max(maxSeq, recordSeq);
+                        records++;
+                    } catch (RuntimeException ex) {
+                        // A torn final line after a crash lands here too.
+                        plugin.getLogger().warning("Skipping malformed claim journal line " + lineNo + ": " + line);
+                    }
+                }
+            } catch (IOException ex) {
+                plugin.getLogger().warning("Failed to read claim journal: " + ex.getMessage());
+            }
+        }
+        seq = Math.max(seq, maxSeq);
+        sinceCompaction = records;
+        return records;
+    }
+
+    private void apply(Map<UUID, Town> towns, long recordSeq, String[] f) {
+        switch (f[1]) {
+            case "C": {
+                Town t = behind(towns, f[2], recordSeq);
+                if (t != null) t.addClaim(new ChunkPos(f[3], Integer.parseInt(f[4]), Integer.parseInt(f[5])));
+                break;
+            }
+            case "U": {
+                Town t = behind(towns, f[2], recordSeq);
+                if (t != null) removeClaim(t, new ChunkPos(f[3], Integer.parseInt(f[4]), Integer.parseInt(f[5])));
+                break;
+            }
+            case "T": {
+                ChunkPos pos = new ChunkPos(f[4], Integer.parseInt(f[5]), Integer.parseInt(f[6]));
+                Town from = behind(towns, f[2], recordSeq);
+                Town to = behind(towns, f[3], recordSeq);
+                if (from != null) removeClaim(from, pos);
+                if (to != null) to.addClaim(pos);
+                break;
+            }
+            case "M+": {
+                Town t = behind(towns, f[2], recordSeq);
+                if (t != null) t.addMember(UUID.fromString(f[3]));
+                break;
+            }
+            case "M-": {
+                Town t = behind(towns, f[2], recordSeq);
+                if (t != null) t.removeMember(UUID.fromString(f[3]));
+                break;
+            }
+            case "A+":
+            case "A-":
+            case "W+":
+            case "W-": {
+                UUID a = UUID.fromString(f[2]);
+                UUID b = UUID.fromString(f[3]);
+                applyRelation(behind(towns, f[2], recordSeq), b, f[1]);
+                applyRelation(behind(towns, f[3], recordSeq), a, f[1]);
+                break;
+            }
+            case "D": {
+                UUID owner = UUID.fromString(f[2]);
+                Town deleted = behind(towns, f[2], recordSeq);
+                if (deleted != null) towns.remove(owner);
+                for (Town other : towns.values()) {
+                    if (other.getJournalSeq() >= recordSeq) continue;
+                    if (other.getAllies().remove(owner) | other.getWars().remove(owner)) touched.add(other.getOwner());
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unknown op " + f[1]);
+        }
+    }
+
+    // Town whose snapshot predates the record; it is marked touched so compaction rewrites it.
+    private Town behind(Map<UUID, Town> towns, String owner, long recordSeq) {
+        Town t = towns.get(UUID.fromString(owner));
+        if (t == null || t.getJournalSeq() >= recordSeq) return null;
+        touched.add(t.getOwner());
+        return t;
+    }
+
+    private static void removeClaim(Town t, ChunkPos pos) {
+        t.removeClaim(pos);
+        t.removeCapitalClaim(pos);
+    }
+
+    private static void applyRelation(Town t, UUID other, String op) {
+        if (t == null) return;
+        switch (op) {
+            case "A+": t.addAlly(other); break;
+            case "A-": t.removeAlly(other); break;
+            case "W+": t.addWar(other); break;
+            default: t.removeWar(other); break;
+        }
+    }
+}
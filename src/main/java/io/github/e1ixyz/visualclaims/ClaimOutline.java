@@ -0,0 +1,205 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Traces a set of chunks (one world) into outline polygons in block coordinates. Each outer ring runs
+// counter-clockwise and holes clockwise. trace() stitches holes into their enclosing ring through a zero-width
+// bridge, because a Dynmap area marker holds a single ring; polygons() keeps them as separate rings.
+final class ClaimOutline {
+    // +x, +z, -x, -z; (d + 1) & 3 is a left turn
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DZ = {0, 1, 0, -1};
+
+    record Ring(double[] x, double[] z) {}
+
+    // One 4-connected group of chunks: its outline and the outlines of the holes inside it.
+    record Polygon(Ring outer, List<Ring> holes, int chunks) {}
+
+    private ClaimOutline() {}
+
+    static List<Ring> trace(Collection<ChunkPos> chunks) {
+        List<List<int[]>> outers = new ArrayList<>();
+        List<List<int[]>> holes = new ArrayList<>();
+        rings(chunks, outers, holes);
+        holes.sort(Comparator.comparingInt(ClaimOutline::maxX).reversed());
+        for (List<int[]> hole : holes) bridge(outers, hole);
+        List<Ring> out = new ArrayList<>(outers.size());
+        for (List<int[]> ring : outers) out.add(toBlocks(ring));
+        return out;
+    }
+
+    // Traces each 4-connected group on its own, so every polygon has exactly one outer ring and owns its holes.
+    static List<Polygon> polygons(Collection<ChunkPos> chunks) {
+        // chunk key -> chunk, not yet assigned to a group
+        Map<Long, ChunkPos> left = new HashMap<>();
+        for (ChunkPos pos : chunks) left.put(ChunkPos.key(pos.getX(), pos.getZ()), pos);
+        List<Long> keys = new ArrayList<>(left.keySet());
+        Collections.sort(keys);
+        List<Polygon> out = new ArrayList<>();
+        for (long seed : keys) {
+            if (!left.containsKey(seed)) continue;
+            List<ChunkPos> group = new ArrayList<>();
+            ArrayDeque<Long> queue = new ArrayDeque<>();
+            queue.add(seed);
+            group.add(left.remove(seed));
+            while (!queue.isEmpty()) {
+                long key = queue.poll();
+                int x = ChunkPos.keyX(key);
+                int z = ChunkPos.keyZ(key);
+                for (int d = 0; d < 4; d++) {
+                    long next = ChunkPos.key(x + DX[d], z + DZ[d]);
+                    ChunkPos pos = left.remove(next);
+                    if (pos == null) continue;
+                    group.add(pos);
+                    queue.add(next);
+                }
+            }
+            List<List<int[]>> outers = new ArrayList<>();
+            List<List<int[]>> holes = new ArrayList<>();
+            rings(group, outers, holes);
+            List<Ring> holeRings = new ArrayList<>(holes.size());
+            for (List<int[]> hole : holes) holeRings.add(toBlocks(hole));
+            out.add(new Polygon(toBlocks(outers.get(0)), holeRings, group.size()));
+        }
+        return out;
+    }
+
+    // Splits the chunks' boundary into outer rings and holes (corner points in doubled chunk coordinates).
+    private static void rings(Collection<ChunkPos> chunks, List<List<int[]>> outers, List<List<int[]>> holes) {
+        Set<Long> cells = new HashSet<>();
+        for (ChunkPos pos : chunks) cells.add(ChunkPos.key(pos.getX(), pos.getZ()));
+        // corner -> bitmask of boundary edges leaving it, interior on the left
+        Map<Long, Integer> edges = new HashMap<>();
+        for (ChunkPos pos : chunks) {
+            int x = pos.getX();
+            int z = pos.getZ();
+            if (!cells.contains(ChunkPos.key(x, z - 1))) addEdge(edges, x, z, 0);
+            if (!cells.contains(ChunkPos.key(x + 1, z))) addEdge(edges, x + 1, z, 1);
+            if (!cells.contains(ChunkPos.key(x, z + 1))) addEdge(edges, x + 1, z + 1, 2);
+            if (!cells.contains(ChunkPos.key(x - 1, z))) addEdge(edges, x, z + 1, 3);
+        }
+        // rings start at their lowest corner, so the same chunks always give the same vertex arrays
+        List<Long> corners = new ArrayList<>(edges.keySet());
+        Collections.sort(corners);
+        int nextCorner = 0;
+        while (!edges.isEmpty()) {
+            while (!edges.containsKey(corners.get(nextCorner))) nextCorner++;
+            List<int[]> ring = walk(edges, corners.get(nextCorner));
+            (signedArea(ring) > 0 ? outers : holes).add(ring);
+        }
+    }
+
+    private static Ring toBlocks(List<int[]> ring) {
+        double[] x = new double[ring.size()];
+        double[] z = new double[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            // ring points use doubled chunk coordinates so bridge points can sit mid-edge
+            x[i] = ring.get(i)[0] * 8.0d;
+            z[i] = ring.get(i)[1] * 8.0d;
+        }
+        return new Ring(x, z);
+    }
+
+    private static void addEdge(Map<Long, Integer> edges, int x, int z, int dir) {
+        edges.merge(ChunkPos.key(x, z), 1 << dir, (a, b) -> a | b);
+    }
+
+    // Follows one boundary ring, keeping only the corners. Where two diagonal chunks touch, the left turn
+    // keeps hugging the same chunk, matching the 4-neighbour adjacency used for clusters.
+    private static List<int[]> walk(Map<Long, Integer> edges, long start) {
+        int startDir = Integer.numberOfTrailingZeros(edges.get(start));
+        take(edges, start, startDir);
+        List<int[]> ring = new ArrayList<>();
+        int x = ChunkPos.keyX(start) + DX[startDir];
+        int z = ChunkPos.keyZ(start) + DZ[startDir];
+        int dir = startDir;
+        while (true) {
+            long key = ChunkPos.key(x, z);
+            int mask = edges.getOrDefault(key, 0);
+            if (key == start) mask |= 1 << startDir;
+            int next = -1;
+            for (int turn : new int[]{1, 0, 3}) {
+                int d = (dir + turn) & 3;
+                if ((mask & (1 << d)) != 0) {
+                    next = d;
+                    break;
+                }
+            }
+            if (next < 0) throw new IllegalStateException("open claim outline at " + x + "," + z);
+            if (next != dir) ring.add(new int[]{x * 2, z * 2});
+            if (key == start && next == startDir) break;
+            take(edges, key, next);
+            dir = next;
+            x += DX[dir];
+            z += DZ[dir];
+        }
+        return ring;
+    }
+
+    private static void take(Map<Long, Integer> edges, long key, int dir) {
+        int left = edges.get(key) & ~(1 << dir);
+        if (left == 0) edges.remove(key);
+        else edges.put(key, left);
+    }
+
+    // Casts a ray in +x from the middle of the hole's right-most edge and splices the hole into the first
+    // ring edge it hits. Holes are taken right-most first, so every edge the ray can hit is already merged.
+    private static void bridge(List<List<int[]>> outers, List<int[]> hole) {
+        int hx = maxX(hole);
+        int j = 0;
+        while (!(hole.get(j)[0] == hx && hole.get((j + 1) % hole.size())[0] == hx)) j++;
+        int[] a = hole.get(j);
+        int[] b = hole.get((j + 1) % hole.size());
+        int zm = Math.min(a[1], b[1]) + 1; // odd, so the ray never passes through a chunk corner
+        List<int[]> target = null;
+        int hitIndex = -1;
+        int hitX = Integer.MAX_VALUE;
+        for (List<int[]> ring : outers) {
+            for (int i = 0; i < ring.size(); i++) {
+                int[] p = ring.get(i);
+                int[] q = ring.get((i + 1) % ring.size());
+                if (p[0] != q[0] || p[0] <= hx || p[0] >= hitX) continue;
+                if (zm > Math.min(p[1], q[1]) && zm < Math.max(p[1], q[1])) {
+                    target = ring;
+                    hitIndex = i;
+                    hitX = p[0];
+                }
+            }
+        }
+        if (target == null) return; // cannot happen for a hole inside a traced outline
+        int[] from = {hitX, zm};
+        int[] to = {hx, zm};
+        List<int[]> splice = new ArrayList<>(hole.size() + 4);
+        splice.add(from);
+        splice.add(to);
+        for (int k = 1; k <= hole.size(); k++) splice.add(hole.get((j + k) % hole.size()));
+        splice.add(to);
+        splice.add(from);
+        target.addAll(hitIndex + 1, splice);
+    }
+
+    private static long signedArea(List<int[]> ring) {
+        long sum = 0L;
+        for (int i = 0; i < ring.size(); i++) {
+            int[] p = ring.get(i);
+            int[] q = ring.get((i + 1) % ring.size());
+            sum += (long) p[0] * q[1] - (long) q[0] * p[1];
+        }
+        return sum;
+    }
+
+    private static int maxX(List<int[]> ring) {
+        int max = Integer.MIN_VALUE;
+        for (int[] p : ring) max = Math.max(max, p[0]);
+        return max;
+    }
+}
@@ -14,11 +14,6 @@ import org.bukkit.event.block.BlockSpreadEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
 
-import java.util.Iterator;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.UUID;
-
 public class ClaimProtectionListener implements Listener {
     private final VisualClaims plugin;
     private final TownManager towns;
@@ -30,7 +25,7 @@ public class ClaimProtectionListener implements Listener {
 
     @EventHandler(ignoreCancelled = true)
     public void onBlockIgnite(BlockIgniteEvent event) {
-        if (!configEnabled("prevent-fire", true)) return;
+        if (!enabled(plugin.getSettings().preventFire())) return;
         Block target = event.getBlock();
         if (target == null) return;
 
@@ -52,7 +47,7 @@ public class ClaimProtectionListener implements Listener {
 
     @EventHandler(ignoreCancelled = true)
     public void onBlockSpread(BlockSpreadEvent event) {
-        if (!configEnabled("prevent-fire-spread", true)) return;
+        if (!enabled(plugin.getSettings().preventFireSpread())) return;
         if (event.getNewState() == null || event.getNewState().getType() != Material.FIRE) return;
         Block target = event.getBlock();
         if (target == null || !isClaimed(target)) return;
@@ -63,7 +58,7 @@ public class ClaimProtectionListener implements Listener {
 
     @EventHandler(ignoreCancelled = true)
     public void onBucketEmpty(PlayerBucketEmptyEvent event) {
-        if (!configEnabled("prevent-lava", true)) return;
+        if (!enabled(plugin.getSettings().preventLava())) return;
         if (event.getBucket() != Material.LAVA_BUCKET) return;
         Block clicked = event.getBlockClicked();
         if (clicked == null) return;
@@ -76,7 +71,7 @@ public class ClaimProtectionListener implements Listener {
 
     @EventHandler(ignoreCancelled = true)
     public void onLavaFlow(BlockFromToEvent event) {
-        if (!configEnabled("prevent-lava-flow", true)) return;
+        if (!enabled(plugin.getSettings().preventLavaFlow())) return;
         if (event.getBlock() == null || event.getToBlock() == null) return;
         if (event.getBlock().getType() != Material.LAVA) return;
         Block to = event.getToBlock();
@@ -87,7 +82,7 @@ public class ClaimProtectionListener implements Listener {
 
     @EventHandler(ignoreCancelled = true)
     public void onTntPlace(BlockPlaceEvent event) {
-        if (!configEnabled("prevent-tnt", true)) return;
+        if (!enabled(plugin.getSettings().preventTnt())) return;
         if (event.getBlockPlaced().getType() != Material.TNT) return;
         if (isProtected(event.getBlockPlaced(), event.getPlayer())) {
             event.setCancelled(true);
@@ -97,7 +92,7 @@ public class ClaimProtectionListener implements Listener {
 
     @EventHandler(ignoreCancelled = true)
     public void onTntExplode(EntityExplodeEvent event) {
-        if (!configEnabled("prevent-tnt-explosions", true)) return;
+        if (!enabled(plugin.getSettings().preventTntExplosions())) return;
         Entity entity = event.getEntity();
         if (entity == null) return;
         if (!(entity instanceof TNTPrimed)) return;
@@ -105,39 +100,34 @@ public class ClaimProtectionListener implements Listener {
         TNTPrimed tnt = (TNTPrimed) entity;
         Entity src = tnt.getSource();
         if (src instanceof Player) source = (Player) src;
-        Iterator<Block> it = event.blockList().iterator();
-        while (it.hasNext()) {
-            Block block = it.next();
-            if (block == null) continue;
-            if (isProtected(block, source)) it.remove();
-        }
+        towns.filterProtectedBlocks(event.blockList(), source);
     }
 
     private boolean isClaimed(Block block) {
-        return getTownAt(block).isPresent();
+        return ownerAt(block) != null;
     }
 
-    private Optional<Town> getTownAt(Block block) {
-        if (block == null) return Optional.empty();
-        return towns.getTownAt(block.getChunk());
+    // Resolve from block coordinates so border blocks never touch (or load) a Chunk.
+    private Town ownerAt(Block block) {
+        if (block == null) return null;
+        return towns.getOwnerAt(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4);
     }
 
     private boolean isProtected(Block block, Player player) {
-        Optional<Town> tOpt = getTownAt(block);
-        if (tOpt.isEmpty()) return false;
+        Town town = ownerAt(block);
+        if (town == null) return false;
         if (player == null) return true;
         if (player.hasPermission("visclaims.admin")) return false;
-        return !tOpt.get().isMember(player.getUniqueId());
+        return !town.isMember(player.getUniqueId());
     }
 
     private boolean sameTown(Block a, Block b) {
-        UUID aOwner = getTownAt(a).map(Town::getOwner).orElse(null);
-        UUID bOwner = getTownAt(b).map(Town::getOwner).orElse(null);
-        return Objects.equals(aOwner, bOwner) && aOwner != null;
+        Town aTown = ownerAt(a);
+        return aTown != null && aTown == ownerAt(b);
     }
 
-    private boolean configEnabled(String key, boolean def) {
+    private boolean enabled(boolean setting) {
         if (towns.isWarmodeEnabled()) return false;
-        return plugin.getConfig().getBoolean("claim-protection." + key, def);
+        return setting;
     }
 }
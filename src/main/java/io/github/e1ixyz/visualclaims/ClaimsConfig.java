@@ -0,0 +1,71 @@
+package io.github.e1ixyz.visualclaims;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+// Immutable snapshot of config.yml values read on hot paths; rebuilt on enable and /claimreload.
+public record ClaimsConfig(
+        int maxClaimsPerPlayer,
+        boolean usePlaytimeScaling,
+        int chunksPerHour,
+        VanillaColor defaultColor,
+        boolean dynmapClusters,
+        int dynmapBudgetMs,
+        boolean dynmapPersistent,
+        boolean dynmapOverview,
+        int dynmapOverviewZoom,
+        int dynmapOverviewCell,
+        boolean geojsonExport,
+        int geojsonIntervalTicks,
+        int geojsonBudgetMs,
+        double fillOpacity,
+        double lineOpacity,
+        int lineWeight,
+        boolean preventFire,
+        boolean preventFireSpread,
+        boolean preventLava,
+        boolean preventLavaFlow,
+        boolean preventTnt,
+        boolean preventTntExplosions,
+        TownFormat storageFormat,
+        String storageBackend,
+        int historyCacheRegions
+) {
+    public static ClaimsConfig from(FileConfiguration cfg) {
+        return new ClaimsConfig(
+                cfg.getInt("max-claims-per-player", 64),
+                cfg.getBoolean("use-playtime-scaling", false),
+                Math.max(1, cfg.getInt("chunks-per-hour", 2)),
+                colorOrDefault(cfg.getString("default-color", "GREEN")),
+                !"chunks".equalsIgnoreCase(cfg.getString("dynmap-render-mode", "clusters")),
+                Math.max(1, cfg.getInt("dynmap-update-budget-ms", 5)),
+                cfg.getBoolean("dynmap-persistent-markers", true),
+                cfg.getBoolean("dynmap-overview.enabled", true),
+                Math.max(1, cfg.getInt("dynmap-overview.zoom", 3)),
+                Math.max(1, cfg.getInt("dynmap-overview.cell-chunks", 4)),
+                cfg.getBoolean("geojson-export.enabled", false),
+                Math.max(1, cfg.getInt("geojson-export.interval-ticks", 100)),
+                Math.max(1, cfg.getInt("geojson-export.budget-ms", 2)),
+                cfg.getDouble("fill-opacity", 0.35),
+                cfg.getDouble("line-opacity", 0.9),
+                cfg.getInt("line-weight", 2),
+                cfg.getBoolean("claim-protection.prevent-fire", true),
+                cfg.getBoolean("claim-protection.prevent-fire-spread", true),
+                cfg.getBoolean("claim-protection.prevent-lava", true),
+                cfg.getBoolean("claim-protection.prevent-lava-flow", true),
+                cfg.getBoolean("claim-protection.prevent-tnt", true),
+                cfg.getBoolean("claim-protection.prevent-tnt-explosions", true),
+                TownFormat.fromString(cfg.getString("storage-format", "json")),
+                backendOrDefault(cfg.getString("storage-backend", "files")),
+                Math.max(1, cfg.getInt("history-cache-regions", 256))
+        );
+    }
+
+    private static String backendOrDefault(String name) {
+        return name != null && name.trim().equalsIgnoreCase("sqlite") ? "sqlite" : "files";
+    }
+
+    private static VanillaColor colorOrDefault(String name) {
+        VanillaColor color = VanillaColor.fromString(name);
+        return color == null ? VanillaColor.GREEN : color;
+    }
+}
@@ -94,6 +94,8 @@ public class CommandHandler implements CommandExecutor {
             case "lb": return leaderboardCommand(p, args);
             case "claimreload": return reloadPlugin(p);
             case "trimoutposts": return trimOutposts(p, args);
+            case "claimbench": return claimBenchmark(p, args);
+            case "claimmigrate": return migrateStorage(p, args);
             case "towninvite": return inviteToTown(p, args);
             case "jointown": return joinTown(p, args);
             case "leavetown": return leaveTown(p);
@@ -130,8 +132,7 @@ public class CommandHandler implements CommandExecutor {
             p.sendMessage("§cYou are already in a town.");
             return true;
         }
-        VanillaColor defaultColor = VanillaColor.fromString(plugin.getConfig().getString("default-color", "GREEN"));
-        boolean ok = towns.createTown(uuid, name, defaultColor == null ? VanillaColor.GREEN : defaultColor, p.getWorld().getName());
+        boolean ok = towns.createTown(uuid, name, plugin.getSettings().defaultColor(), p.getWorld().getName());
         if (ok) {
             String label = towns.getTownOf(uuid).map(towns::coloredTownName).orElse("§e" + name + "§r");
             p.sendMessage("§aCreated town " + label);
@@ -356,7 +357,7 @@ public class CommandHandler implements CommandExecutor {
         t.setName(newName);
         towns.saveTown(t);
         towns.refreshTownAreas(t);
-        towns.refreshLeaderboardScoreboard();
+        towns.markLeaderboardDirty(TownManager.LB_ALL);
         p.sendMessage("§aTown renamed to " + towns.coloredTownName(t));
         return true;
     }
@@ -384,7 +385,7 @@ public class CommandHandler implements CommandExecutor {
         t.setColor(c);
         towns.saveTown(t);
         towns.refreshTownAreas(t);
-        towns.refreshLeaderboardScoreboard();
+        towns.markLeaderboardDirty(TownManager.LB_ALL);
         p.sendMessage("§aTown color set to §e" + c.name());
         return true;
     }
@@ -432,9 +433,10 @@ public class CommandHandler implements CommandExecutor {
         int claimed = townOpt.get().claimCount();
         int bonus = townOpt.get().getBonusChunks();
         int contestedSpent = townOpt.get().getContestedClaimsSpent();
-        int chunksPerHour = Math.max(1, plugin.getConfig().getInt("chunks-per-hour", 2));
-        boolean usingPlaytime = plugin.getConfig().getBoolean("use-playtime-scaling", false);
-        int baseMax = plugin.getConfig().getInt("max-claims-per-player", 64);
+        ClaimsConfig cfg = plugin.getSettings();
+        int chunksPerHour = cfg.chunksPerHour();
+        boolean usingPlaytime = cfg.usePlaytimeScaling();
+        int baseMax = cfg.maxClaimsPerPlayer();
         int playtimeAllowance = usingPlaytime ? playtimeHours * chunksPerHour : 0;
         int theoretical = Math.max(0, baseMax + playtimeAllowance + bonus - contestedSpent);
         int limit = Math.max(theoretical, claimed);
@@ -643,6 +645,10 @@ public class CommandHandler implements CommandExecutor {
         p.sendMessage("§f/unclaim §7(with visclaims.admin) - Force unclaim any chunk");
         p.sendMessage("§f/warmode §7- Toggle war mode (disables claim protection)");
         p.sendMessage("§f/trimoutposts <player> [count] §7- Remove the smallest outpost clusters for a player");
+        p.sendMessage("§f/claimbench explosion [blocks] §7- Benchmark claim lookups around you");
+        p.sendMessage("§f/claimbench storage §7- Benchmark JSON vs binary town storage");
+        p.sendMessage("§f/claimbench markers §7- Show map renderer stats (Dynmap queue, GeoJSON export)");
+        p.sendMessage("§f/claimmigrate <files|sqlite> §7- Copy all towns into another storage backend");
         return true;
         }
         p.sendMessage("§e--- Claim Commands ---");
@@ -942,21 +948,23 @@ public class CommandHandler implements CommandExecutor {
             return true;
         }
         ChunkPos pos = ChunkPos.of(p.getLocation().getChunk());
-        List<ChunkHistoryEntry> entries = towns.getHistoryFor(pos);
-        p.sendMessage("§e--- Claim History (" + pos.getX() + "," + pos.getZ() + ") ---");
-        if (entries.isEmpty()) {
-            p.sendMessage("§7No history for this chunk.");
-            return true;
-        }
-        int shown = 0;
-        for (ChunkHistoryEntry e : entries) {
-            if (shown >= 5) break;
-            String allies = e.getAlliances().isEmpty() ? "none" : String.join(", ", e.getAlliances());
-            String coloredName = towns.coloredTownName(e.getTownOwner(), e.getTownName());
-            p.sendMessage("§f" + e.getAction() + " §7by " + coloredName + " §7(" + formatAgo(e.getTimestamp()) + ")");
-            p.sendMessage("§7Allies: §f" + allies);
-            shown++;
-        }
+        towns.getHistoryFor(pos, entries -> {
+            if (!p.isOnline()) return;
+            p.sendMessage("§e--- Claim History (" + pos.getX() + "," + pos.getZ() + ") ---");
+            if (entries.isEmpty()) {
+                p.sendMessage("§7No history for this chunk.");
+                return;
+            }
+            int shown = 0;
+            for (ChunkHistoryEntry e : entries) {
+                if (shown >= 5) break;
+                String allies = e.getAlliances().isEmpty() ? "none" : String.join(", ", e.getAlliances());
+                String coloredName = towns.coloredTownName(e.getTownOwner(), e.getTownName());
+                p.sendMessage("§f" + e.getAction() + " §7by " + coloredName + " §7(" + formatAgo(e.getTimestamp()) + ")");
+                p.sendMessage("§7Allies: §f" + allies);
+                shown++;
+            }
+        });
         return true;
     }
 
@@ -1001,7 +1009,10 @@ public class CommandHandler implements CommandExecutor {
             p.sendMessage("§cNo permission.");
             return true;
         }
-        plugin.reloadConfig();
+        if (towns.isMigrating()) {
+            p.sendMessage("§cWait for the storage migration to finish before reloading.");
+            return true;
+        }
         towns.reloadAll();
         p.sendMessage("§aVisualClaims reloaded.");
         return true;
@@ -1037,6 +1048,73 @@ public class CommandHandler implements CommandExecutor {
         return true;
     }
 
+    private boolean claimBenchmark(Player p, String[] args) {
+        if (!p.hasPermission("visclaims.admin")) {
+            p.sendMessage("§cNo permission.");
+            return true;
+        }
+        if (args.length == 1 && args[0].equalsIgnoreCase("markers")) {
+            List<MapRenderer> renderers = plugin.getRenderers();
+            if (renderers.isEmpty()) {
+                p.sendMessage("§cNo map renderer is active.");
+                return true;
+            }
+            for (MapRenderer r : renderers) {
+                for (String line : r.stats()) p.sendMessage(line);
+            }
+            return true;
+        }
+        if (args.length == 1 && args[0].equalsIgnoreCase("storage")) {
+            for (String line : new ClaimBenchmark(towns).storage()) p.sendMessage(line);
+            return true;
+        }
+        if (args.length < 1 || args.length > 2 || !args[0].equalsIgnoreCase("explosion")) {
+            p.sendMessage("Usage: /claimbench <explosion [blocks]|storage|markers>");
+            return true;
+        }
+        List<Integer> sizes = new ArrayList<>(List.of(1000, 10000));
+        if (args.length == 2) {
+            try {
+                sizes = List.of(Math.max(1, Math.min(100000, Integer.parseInt(args[1]))));
+            } catch (NumberFormatException ex) {
+                p.sendMessage("§cBlocks must be a number.");
+                return true;
+            }
+        }
+        ClaimBenchmark bench = new ClaimBenchmark(towns);
+        for (int size : sizes) {
+            for (String line : bench.explosion(p.getLocation(), size)) p.sendMessage(line);
+        }
+        return true;
+    }
+
+    private boolean migrateStorage(Player p, String[] args) {
+        if (!p.hasPermission("visclaims.admin")) {
+            p.sendMessage("§cNo permission.");
+            return true;
+        }
+        if (args.length != 1 || !(args[0].equalsIgnoreCase("files") || args[0].equalsIgnoreCase("sqlite"))) {
+            p.sendMessage("Usage: /claimmigrate <files|sqlite>");
+            return true;
+        }
+        String backend = args[0].toLowerCase(Locale.ROOT);
+        if (towns.isMigrating()) {
+            p.sendMessage("§cA storage migration is already running.");
+            return true;
+        }
+        if (backend.equals(towns.liveStorageBackend())) {
+            p.sendMessage("§cTowns are already stored in " + backend + ".");
+            return true;
+        }
+        p.sendMessage("§eMigrating towns to " + backend + "...");
+        UUID id = p.getUniqueId();
+        towns.migrateStorage(backend, msg -> {
+            Player online = plugin.getServer().getPlayer(id);
+            if (online != null) online.sendMessage(msg);
+        });
+        return true;
+    }
+
     private boolean leaderboardCommand(Player p, String[] args) {
         if (!p.hasPermission("visclaims.leaderboard")) {
             p.sendMessage("§cNo permission.");
@@ -1291,6 +1369,10 @@ public class CommandHandler implements CommandExecutor {
         p.sendMessage("§f/unclaim (with visclaims.admin) §7- Force unclaim any chunk");
         p.sendMessage("§f/warmode §7- Toggle war mode (disables claim protection)");
         p.sendMessage("§f/trimoutposts <player> [count] §7- Remove the smallest outpost clusters for a player");
+        p.sendMessage("§f/claimbench explosion [blocks] §7- Benchmark claim lookups around you");
+        p.sendMessage("§f/claimbench storage §7- Benchmark JSON vs binary town storage");
+        p.sendMessage("§f/claimbench markers §7- Show map renderer stats (Dynmap queue, GeoJSON export)");
+        p.sendMessage("§f/claimmigrate <files|sqlite> §7- Copy all towns into another storage backend");
         return true;
     }
 
@@ -1,25 +1,102 @@
 package io.github.e1ixyz.visualclaims;
 
 import org.bukkit.Bukkit;
-import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
 import org.dynmap.DynmapAPI;
 import org.dynmap.markers.AreaMarker;
 import org.dynmap.markers.MarkerAPI;
 import org.dynmap.markers.MarkerSet;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DynmapHook implements MapRenderer {
+    private static final int[][] NEIGHBOURS = { {1,0}, {-1,0}, {0,1}, {0,-1} };
+    private static final int DRAIN_BATCH = 32;
+    private static final int LOG_BACKLOG_OVER = 1000;
 
-public class DynmapHook {
     private final VisualClaims plugin;
     private DynmapAPI dynmap;
     private MarkerAPI markerApi;
     private MarkerSet markerSet;
+    private MarkerSet overviewSet; // coarse per-cluster outlines for zoomed-out views; null when disabled
+    private boolean clusterMode;
+    private boolean persistent;
+
+    // markerId -> marker and the state last pushed to it
+    private final Map<String, Applied> markers = new HashMap<>();
+    // groupId -> markers drawn for one claim cluster (cluster mode)
+    private final Map<String, ClusterGroup> groups = new HashMap<>();
+    // chunkId -> groupId of the cluster covering it
+    private final Map<String, String> groupByChunk = new HashMap<>();
+    // chunks whose markers are out of date, oldest first; the marker is rebuilt from the claim index when
+    // drained, so repeated changes to a chunk collapse into one update
+    private final LinkedHashSet<ChunkPos> queue = new LinkedHashSet<>();
+    private BukkitTask drainTask;
+    private final ExecutorService geometry;
+    private Future<GeometryResult> inFlight;
+    private long epoch; // bumped by clearAll so results computed before it are dropped
+    // markers found in the persistent set at startup and not drawn again yet; what is left once the first
+    // full refresh has drained are orphans
+    private Set<String> unreconciled;
+    private long[] countsAtHook;
+    private int peakDepth;
+    private long applied;
+    private long appliedInWindow;
+    private long windowStartNanos = System.nanoTime();
+    private double drainRate; // updates per second over the last full window
+    private long created;
+    private long updated;
+    private long unchanged;
+    private long deleted;
+    private long backlogApplied; // updates applied since the queue was last empty
+    private int backlogTicks;
+
+    private record ClusterGroup(List<String> markerIds, Set<ChunkPos> chunks) {}
+
+    // Immutable input for the geometry worker, captured on the main thread.
+    private record GeometryJob(long epoch, ClaimsConfig cfg, List<ClusterSnapshot> clusters, List<ChunkSnapshot> chunks, Set<String> stale) {}
+
+    // townStyle is set when the cluster also gets an overview outline, traced on a grid of cell x cell chunks
+    private record ClusterSnapshot(String groupId, String world, Set<ChunkPos> chunks, Map<MarkerStyle, List<ChunkPos>> parts, MarkerStyle townStyle, int cell) {}
+
+    // style is null when the chunk is no longer claimed (chunk mode)
+    private record ChunkSnapshot(ChunkPos pos, MarkerStyle style) {}
+
+    // Finished marker descriptors, applied on the main thread.
+    private record GeometryResult(long epoch, List<DrawnCluster> clusters, List<Descriptor> chunkMarkers, List<String> chunkRemovals, Set<String> stale) {}
+
+    private record DrawnCluster(String groupId, Set<ChunkPos> chunks, List<Descriptor> markers) {}
+
+    private record Descriptor(String id, MarkerState state, boolean overview) {}
 
-    // chunkId -> AreaMarker
-    private final Map<String, AreaMarker> markersByChunk = new HashMap<>();
+    // Everything a marker shows; compared before touching the API so unchanged markers are not republished.
+    private record MarkerState(String world, String label, int rgb, int lineWeight, double lineOpacity, double fillOpacity, double[] x, double[] z) {
+        boolean sameGeometry(MarkerState o) { return Arrays.equals(x, o.x) && Arrays.equals(z, o.z); }
+        boolean sameLine(MarkerState o) { return rgb == o.rgb && lineWeight == o.lineWeight && lineOpacity == o.lineOpacity; }
+        boolean sameFill(MarkerState o) { return rgb == o.rgb && fillOpacity == o.fillOpacity; }
+    }
+
+    private static final class Applied {
+        private final AreaMarker marker;
+        private MarkerState state;
+
+        private Applied(AreaMarker marker, MarkerState state) {
+            this.marker = marker;
+            this.state = state;
+        }
+    }
 
     public DynmapHook(VisualClaims plugin) {
         this.plugin = plugin;
+        this.geometry = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "VisualClaims-MarkerGeometry");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     public boolean hook() {
@@ -29,63 +106,410 @@ public class DynmapHook {
         this.dynmap = api;
         this.markerApi = dynmap.getMarkerAPI();
         if (markerApi == null) return false;
-        markerSet = markerApi.getMarkerSet("visualclaims.towns");
-        if (markerSet == null) markerSet = markerApi.createMarkerSet("visualclaims.towns", "Towns", null, false);
-        return markerSet != null;
+        persistent = plugin.getSettings().dynmapPersistent();
+        markerSet = openSet("visualclaims.towns", "Towns");
+        if (markerSet == null) return false;
+        clusterMode = plugin.getSettings().dynmapClusters();
+        configureOverview();
+        if (persistent) {
+            unreconciled = new HashSet<>();
+            adoptExisting(markerSet);
+            if (overviewSet != null) adoptExisting(overviewSet);
+            countsAtHook = new long[]{created, updated, unchanged, deleted};
+        }
+        return true;
     }
 
-    public void clearAll() {
-        for (AreaMarker m : new ArrayList<>(markersByChunk.values())) {
-            m.deleteMarker();
+    private MarkerSet openSet(String id, String label) {
+        MarkerSet set = markerApi.getMarkerSet(id);
+        if (set != null && set.isMarkerSetPersistent() != persistent) {
+            set.deleteMarkerSet();
+            set = null;
         }
-        markersByChunk.clear();
+        return set != null ? set : markerApi.createMarkerSet(id, label, null, persistent);
     }
 
-    public void removeAreaMarker(ChunkPos pos) {
-        AreaMarker m = markersByChunk.remove(pos.id());
-        if (m != null) m.deleteMarker();
+    // Opens or drops the overview layer and splits the zoom range: the overview shows below the configured
+    // zoom level and the detailed outlines from it upwards.
+    private void configureOverview() {
+        ClaimsConfig cfg = plugin.getSettings();
+        boolean enabled = cfg.dynmapOverview() && clusterMode;
+        if (!enabled) {
+            // refreshAll has already cleared the markers when the layer was switched off
+            MarkerSet stale = markerApi.getMarkerSet("visualclaims.towns.overview");
+            if (stale != null) stale.deleteMarkerSet();
+            overviewSet = null;
+            markerSet.setMinZoom(-1);
+            return;
+        }
+        if (overviewSet == null) overviewSet = openSet("visualclaims.towns.overview", "Towns (overview)");
+        if (overviewSet == null) {
+            markerSet.setMinZoom(-1);
+            return;
+        }
+        overviewSet.setMaxZoom(cfg.dynmapOverviewZoom() - 1);
+        markerSet.setMinZoom(cfg.dynmapOverviewZoom());
     }
 
-    public void addOrUpdateChunkArea(Town t, ChunkPos pos) {
-        if (t == null) return;
-        VanillaColor c = t.getColor();
-        int rgb = (c != null) ? c.rgb : VanillaColor.GREEN.rgb;
-        addOrUpdateChunkArea(t.getName(), rgb, pos);
+    // Takes over the markers Dynmap restored from disk; the first refresh diffs against them instead of
+    // starting from an empty set.
+    private void adoptExisting(MarkerSet set) {
+        for (AreaMarker m : set.getAreaMarkers()) {
+            int n = m.getCornerCount();
+            double[] x = new double[n];
+            double[] z = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = m.getCornerX(i);
+                z[i] = m.getCornerZ(i);
+            }
+            // a line colour that differs from the fill can never match, so it is rewritten
+            int lineWeight = m.getLineColor() == m.getFillColor() ? m.getLineWeight() : -1;
+            MarkerState state = new MarkerState(m.getWorld(), m.getLabel(), m.getFillColor(), lineWeight, m.getLineOpacity(), m.getFillOpacity(), x, z);
+            markers.put(m.getMarkerID(), new Applied(m, state));
+            unreconciled.add(m.getMarkerID());
+        }
     }
 
-    public void addOrUpdateChunkArea(String label, int rgb, ChunkPos pos) {
-        if (markerApi == null || markerSet == null) return;
-        World w = Bukkit.getWorld(pos.getWorld());
-        if (w == null) return;
+    private void finishReconcile() {
+        if (unreconciled == null) return;
+        int orphans = unreconciled.size();
+        for (String id : unreconciled) deleteMarker(id);
+        unreconciled = null;
+        plugin.getLogger().info("Reconciled Dynmap markers: " + (unchanged - countsAtHook[2]) + " unchanged, " + (updated - countsAtHook[1])
+                + " updated, " + (created - countsAtHook[0]) + " created, " + orphans + " orphans removed.");
+    }
 
-        String id = pos.id();
-        AreaMarker m = markersByChunk.get(id);
+    public void start() {
+        if (markerSet == null) return;
+        stop();
+        drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
 
-        int bx = pos.getX() * 16;
-        int bz = pos.getZ() * 16;
-        double[] x = new double[]{bx, bx + 16, bx + 16, bx};
-        double[] y = new double[]{bz, bz, bz + 16, bz + 16};
+    public void stop() {
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+    }
 
-        if (m == null) {
-            m = markerSet.createAreaMarker(id, label, false, pos.getWorld(), x, y, false);
-            markersByChunk.put(id, m);
+    // Persistent markers stay for the next start, so pending updates are applied first; otherwise the set is emptied.
+    @Override
+    public void shutdown() {
+        stop();
+        if (!persistent || markerSet == null) {
+            clearAll();
         } else {
-            m.setCornerLocations(x, y);
-            m.setLabel(label);
+            if (inFlight != null) applyFinished();
+            TownManager tm = plugin.getTownManager();
+            while (tm != null && !queue.isEmpty()) applyResult(compute(prepare(tm, Long.MAX_VALUE)));
+            finishReconcile();
+        }
+        geometry.shutdownNow();
+    }
+
+    public void clearAll() {
+        epoch++;
+        inFlight = null;
+        queue.clear();
+        if (unreconciled != null) unreconciled.clear();
+        for (Applied a : markers.values()) a.marker.deleteMarker();
+        markers.clear();
+        groups.clear();
+        groupByChunk.clear();
+    }
+
+    @Override
+    public String name() {
+        return "dynmap";
+    }
+
+    // Redraws every claim; switching render-mode or the overview layer on /claimreload starts from an empty set.
+    @Override
+    public void refreshAll(Collection<Town> towns) {
+        if (markerSet == null) return;
+        ClaimsConfig cfg = plugin.getSettings();
+        boolean clusters = cfg.dynmapClusters();
+        if (clusters != clusterMode || (cfg.dynmapOverview() && clusters) != (overviewSet != null)) {
+            clearAll();
+            clusterMode = clusters;
+        }
+        configureOverview();
+        List<ChunkPos> all = new ArrayList<>();
+        for (Town t : towns) all.addAll(t.getClaims());
+        claimsChanged(all);
+    }
+
+    // Queues the chunks; their markers are brought in line with the claim index on a later tick.
+    @Override
+    public void claimsChanged(Collection<ChunkPos> chunks) {
+        if (markerApi == null || markerSet == null) return;
+        queue.addAll(chunks);
+        peakDepth = Math.max(peakDepth, queue.size());
+    }
+
+    @Override
+    public List<String> stats() {
+        List<String> out = new ArrayList<>();
+        out.add("§eDynmap marker queue (" + (clusterMode ? "clusters" : "chunks") + " mode)");
+        out.add("§7Depth: §f" + queue.size() + " §7(peak §f" + peakDepth + "§7)" + (inFlight != null ? " §7+ geometry job in flight" : ""));
+        out.add("§7Drain rate: §f" + String.format("%.0f", drainRate) + " §7chunks/s, §f" + applied + " §7applied since start");
+        out.add("§7Budget: §f" + plugin.getSettings().dynmapBudgetMs() + " ms§7/tick");
+        out.add("§7Markers: §f" + markers.size() + " §7(created §f" + created + "§7, updated §f" + updated
+                + "§7, unchanged §f" + unchanged + "§7, deleted §f" + deleted + "§7)");
+        return out;
+    }
+
+    // Applies the finished geometry job, if any, then snapshots queued chunks until this tick's time budget
+    // is spent and hands them to the geometry worker. Only one job is in flight, so the group bookkeeping it
+    // was prepared against cannot change underneath it; updates queued meanwhile go into the next job.
+    private void drain() {
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= 1_000_000_000L) {
+            drainRate = appliedInWindow * 1_000_000_000d / (now - windowStartNanos);
+            appliedInWindow = 0L;
+            windowStartNanos = now;
+        }
+        if (inFlight != null) {
+            if (!inFlight.isDone()) return;
+            applyFinished();
+        }
+        if (queue.isEmpty()) {
+            finishReconcile();
+            return;
+        }
+        backlogTicks++;
+        long deadline = now + plugin.getSettings().dynmapBudgetMs() * 1_000_000L;
+        GeometryJob job = prepare(plugin.getTownManager(), deadline);
+        inFlight = geometry.submit(() -> compute(job));
+        if (queue.isEmpty()) {
+            if (backlogApplied >= LOG_BACKLOG_OVER) {
+                plugin.getLogger().info("Applied " + backlogApplied + " Dynmap marker updates over " + backlogTicks + " ticks.");
+            }
+            backlogApplied = 0L;
+            backlogTicks = 0;
+        }
+    }
+
+    private void applyFinished() {
+        Future<GeometryResult> done = inFlight;
+        inFlight = null;
+        try {
+            applyResult(done.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            plugin.getLogger().warning("Failed to compute Dynmap marker geometry: " + cause);
+        }
+    }
+
+    // Main thread: pulls chunks off the queue and captures everything the worker needs (cluster membership,
+    // styles, config) as an immutable snapshot. Returns once the queue is empty or the deadline has passed.
+    private GeometryJob prepare(TownManager tm, long deadline) {
+        ClaimsConfig cfg = plugin.getSettings();
+        List<ClusterSnapshot> clusters = new ArrayList<>();
+        List<ChunkSnapshot> chunks = new ArrayList<>();
+        Set<String> stale = new HashSet<>();
+        List<ChunkPos> batch = new ArrayList<>(DRAIN_BATCH);
+        do {
+            Iterator<ChunkPos> it = queue.iterator();
+            while (batch.size() < DRAIN_BATCH && it.hasNext()) {
+                batch.add(it.next());
+                it.remove();
+            }
+            int before = queue.size();
+            if (clusterMode) {
+                // chunks covered by a redrawn cluster need no update of their own
+                queue.removeAll(snapshotClusters(tm, batch, clusters, stale));
+            } else {
+                for (ChunkPos pos : batch) {
+                    MarkerStyle style = tm.markerStyle(pos);
+                    if (style == null || Bukkit.getWorld(pos.getWorld()) != null) chunks.add(new ChunkSnapshot(pos, style));
+                }
+            }
+            long done = batch.size() + (before - queue.size());
+            applied += done;
+            appliedInWindow += done;
+            backlogApplied += done;
+            batch.clear();
+        } while (!queue.isEmpty() && System.nanoTime() < deadline);
+        return new GeometryJob(epoch, cfg, clusters, chunks, stale);
+    }
+
+    // Worker thread: traces outlines and builds the marker descriptors. Touches nothing but the job.
+    private static GeometryResult compute(GeometryJob job) {
+        List<DrawnCluster> drawn = new ArrayList<>(job.clusters().size());
+        for (ClusterSnapshot c : job.clusters()) {
+            List<Descriptor> out = new ArrayList<>();
+            for (Map.Entry<MarkerStyle, List<ChunkPos>> part : c.parts().entrySet()) {
+                for (ClaimOutline.Ring ring : ClaimOutline.trace(part.getValue())) {
+                    String id = c.groupId() + "#" + out.size();
+                    out.add(new Descriptor(id, state(job.cfg(), c.world(), part.getKey(), ring.x(), ring.z()), false));
+                }
+            }
+            if (c.townStyle() != null) {
+                Set<ChunkPos> cells = new HashSet<>();
+                for (ChunkPos pos : c.chunks()) cells.add(new ChunkPos(c.world(), Math.floorDiv(pos.getX(), c.cell()), Math.floorDiv(pos.getZ(), c.cell())));
+                int n = 0;
+                for (ClaimOutline.Ring ring : ClaimOutline.trace(cells)) {
+                    double[] x = ring.x().clone();
+                    double[] z = ring.z().clone();
+                    for (int i = 0; i < x.length; i++) {
+                        x[i] *= c.cell();
+                        z[i] *= c.cell();
+                    }
+                    out.add(new Descriptor(c.groupId() + "#o" + n++, state(job.cfg(), c.world(), c.townStyle(), x, z), true));
+                }
+            }
+            drawn.add(new DrawnCluster(c.groupId(), c.chunks(), out));
+        }
+        List<Descriptor> squares = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (ChunkSnapshot c : job.chunks()) {
+            ChunkPos pos = c.pos();
+            if (c.style() == null) {
+                removed.add(pos.id());
+                continue;
+            }
+            int bx = pos.getX() * 16;
+            int bz = pos.getZ() * 16;
+            double[] x = new double[]{bx, bx + 16, bx + 16, bx};
+            double[] z = new double[]{bz, bz, bz + 16, bz + 16};
+            squares.add(new Descriptor(pos.id(), state(job.cfg(), pos.getWorld(), c.style(), x, z), false));
+        }
+        return new GeometryResult(job.epoch(), drawn, squares, removed, job.stale());
+    }
+
+    // Main thread: pushes the descriptors through the marker API. Results from before a clearAll are dropped.
+    private void applyResult(GeometryResult r) {
+        if (r.epoch() != epoch || markerSet == null) return;
+        Set<String> stale = new HashSet<>(r.stale());
+        for (DrawnCluster c : r.clusters()) {
+            List<String> ids = new ArrayList<>(c.markers().size());
+            for (Descriptor d : c.markers()) {
+                MarkerSet set = d.overview() ? overviewSet : markerSet;
+                if (set == null) continue;
+                putMarker(set, d.id(), d.state());
+                ids.add(d.id());
+            }
+            stale.removeAll(ids);
+            groups.put(c.groupId(), new ClusterGroup(ids, c.chunks()));
+            for (ChunkPos pos : c.chunks()) groupByChunk.put(pos.id(), c.groupId());
+        }
+        for (String id : stale) deleteMarker(id);
+        for (Descriptor d : r.chunkMarkers()) putMarker(markerSet, d.id(), d.state());
+        for (String id : r.chunkRemovals()) deleteMarker(id);
+    }
+
+    private static MarkerState state(ClaimsConfig cfg, String world, MarkerStyle style, double[] x, double[] z) {
+        return new MarkerState(world, style.label(), style.rgb(), cfg.lineWeight(), cfg.lineOpacity(), cfg.fillOpacity(), x, z);
+    }
+
+    // Creates the marker or pushes only the parts of its state that differ from what was last applied.
+    private void putMarker(MarkerSet set, String id, MarkerState want) {
+        if (unreconciled != null) unreconciled.remove(id);
+        Applied cur = markers.get(id);
+        if (cur != null && (!cur.state.world().equals(want.world()) || cur.marker.getMarkerSet() != set)) {
+            deleteMarker(id);
+            cur = null;
+        }
+        if (cur == null) {
+            AreaMarker m = set.createAreaMarker(id, want.label(), false, want.world(), want.x(), want.z(), persistent);
+            if (m == null) return;
+            m.setLineStyle(want.lineWeight(), want.lineOpacity(), want.rgb());
+            m.setFillStyle(want.fillOpacity(), want.rgb());
+            markers.put(id, new Applied(m, want));
+            created++;
+            return;
+        }
+        MarkerState had = cur.state;
+        boolean changed = false;
+        if (!had.sameGeometry(want)) {
+            cur.marker.setCornerLocations(want.x(), want.z());
+            changed = true;
+        }
+        if (!Objects.equals(had.label(), want.label())) {
+            cur.marker.setLabel(want.label());
+            changed = true;
         }
+        if (!had.sameLine(want)) {
+            cur.marker.setLineStyle(want.lineWeight(), want.lineOpacity(), want.rgb());
+            changed = true;
+        }
+        if (!had.sameFill(want)) {
+            cur.marker.setFillStyle(want.fillOpacity(), want.rgb());
+            changed = true;
+        }
+        cur.state = want;
+        if (changed) updated++;
+        else unchanged++;
+    }
 
-        int lineWeight = plugin.getConfig().getInt("line-weight", plugin.getConfig().getInt("line-weight", 2));
-        double lineOpacity = plugin.getConfig().getDouble("line-opacity", plugin.getConfig().getDouble("line-opacity", 0.9));
-        double fillOpacity = plugin.getConfig().getDouble("fill-opacity", plugin.getConfig().getDouble("fill-opacity", 0.35));
-        m.setLineStyle(lineWeight, lineOpacity, rgb);
-        m.setFillStyle(fillOpacity, rgb);
+    private void deleteMarker(String id) {
+        Applied a = markers.remove(id);
+        if (a == null) return;
+        a.marker.deleteMarker();
+        deleted++;
     }
 
-    public void refreshTownAreas(Town t) {
-        for (ChunkPos pos : t.getClaims()) addOrUpdateChunkArea(t, pos);
+    // Detaches the cluster groups touching the changed chunks (and their neighbours, which a claim can merge
+    // with) and snapshots each affected cluster once. The detached groups' marker ids go into stale; the ones
+    // not drawn again are deleted when the result is applied. Returns the chunks covered.
+    private Set<ChunkPos> snapshotClusters(TownManager tm, Collection<ChunkPos> chunks, List<ClusterSnapshot> out, Set<String> stale) {
+        Deque<ChunkPos> pending = new ArrayDeque<>();
+        for (ChunkPos pos : chunks) {
+            pending.add(pos);
+            dropGroup(pos, pending, stale);
+            for (int[] d : NEIGHBOURS) dropGroup(new ChunkPos(pos.getWorld(), pos.getX() + d[0], pos.getZ() + d[1]), pending, stale);
+        }
+        Set<ChunkPos> drawn = new HashSet<>();
+        ChunkPos pos;
+        while ((pos = pending.poll()) != null) {
+            if (drawn.contains(pos)) continue;
+            Town owner = tm.getOwnerAt(pos.getWorld(), pos.getX(), pos.getZ());
+            if (owner == null) continue;
+            Set<ChunkPos> cluster = new HashSet<>();
+            for (ChunkPos c : tm.getClaimCluster(owner, pos)) {
+                if (tm.getOwnerAt(c.getWorld(), c.getX(), c.getZ()) == owner) cluster.add(c);
+            }
+            if (!cluster.contains(pos)) cluster = new HashSet<>(Collections.singleton(pos));
+            // a chunk still drawn by an older group would be painted twice
+            for (ChunkPos c : cluster) dropGroup(c, pending, stale);
+            drawn.addAll(cluster);
+            ClusterSnapshot snap = snapshotCluster(tm, owner, cluster);
+            if (snap != null) out.add(snap);
+        }
+        return drawn;
     }
 
-    public void refreshAllTownAreas(TownManager tm) {
-        for (Town t : tm.allTowns()) refreshTownAreas(t);
+    private void dropGroup(ChunkPos pos, Deque<ChunkPos> pending, Set<String> stale) {
+        String groupId = groupByChunk.get(pos.id());
+        if (groupId == null) return;
+        ClusterGroup g = groups.remove(groupId);
+        if (g == null) return;
+        stale.addAll(g.markerIds());
+        for (ChunkPos c : g.chunks()) {
+            groupByChunk.remove(c.id());
+            pending.add(c);
+        }
+    }
+
+    // Splits the cluster into its differently styled parts (capital, contested, rest); each part becomes one
+    // marker per outline on the worker.
+    private ClusterSnapshot snapshotCluster(TownManager tm, Town owner, Set<ChunkPos> cluster) {
+        ChunkPos anchor = null;
+        // style -> chunks drawn with it
+        Map<MarkerStyle, List<ChunkPos>> parts = new TreeMap<>(Comparator.comparing(MarkerStyle::label, Comparator.nullsFirst(Comparator.naturalOrder())).thenComparingInt(MarkerStyle::rgb));
+        for (ChunkPos c : cluster) {
+            MarkerStyle style = tm.markerStyle(c);
+            if (style == null) continue;
+            parts.computeIfAbsent(style, k -> new ArrayList<>()).add(c);
+            if (anchor == null || c.getX() < anchor.getX() || (c.getX() == anchor.getX() && c.getZ() < anchor.getZ())) anchor = c;
+        }
+        if (anchor == null || Bukkit.getWorld(anchor.getWorld()) == null) return null;
+        // stable for the same cluster: owner plus its lowest chunk
+        String groupId = owner.getOwner() + ":" + anchor.id();
+        MarkerStyle townStyle = overviewSet != null ? tm.townStyle(owner) : null;
+        return new ClusterSnapshot(groupId, anchor.getWorld(), Set.copyOf(cluster), Collections.unmodifiableMap(parts), townStyle, plugin.getSettings().dynmapOverviewCell());
     }
 }
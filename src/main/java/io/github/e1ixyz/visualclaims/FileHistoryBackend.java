@@ -0,0 +1,95 @@
+package io.github.e1ixyz.visualclaims;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// One JSON file per region: history/<world>/r.<x>.<z>.json. A write replaces the whole region file.
+public class FileHistoryBackend implements HistoryBackend {
+    private final File dir;
+    private final Gson gson = new Gson();
+
+    public FileHistoryBackend(File dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public String describe() {
+        return "files (" + dir.getName() + "/)";
+    }
+
+    @Override
+    public Map<String, List<ChunkHistoryEntry>> read(HistoryStore.RegionKey key) throws IOException {
+        return read(file(key));
+    }
+
+    @Override
+    public void write(HistoryStore.RegionKey key, Map<String, List<ChunkHistoryEntry>> region, Set<String> changed) throws IOException {
+        File f = file(key);
+        File parent = f.getParentFile();
+        if (!parent.exists()) parent.mkdirs();
+        File tmp = new File(parent, f.getName() + ".tmp");
+        try (Writer w = new BufferedWriter(new FileWriter(tmp))) {
+            gson.toJson(region, w);
+        }
+        TownWriter.moveIntoPlace(tmp.toPath(), f.toPath());
+    }
+
+    @Override
+    public Map<String, List<ChunkHistoryEntry>> readAll() throws IOException {
+        Map<String, List<ChunkHistoryEntry>> all = new HashMap<>();
+        for (File f : regionFiles()) all.putAll(read(f));
+        return all;
+    }
+
+    // Writes every region first and only then removes region files that are not in the set.
+    @Override
+    public void replaceAll(Map<HistoryStore.RegionKey, Map<String, List<ChunkHistoryEntry>>> regions) throws IOException {
+        Set<File> keep = new HashSet<>();
+        for (Map.Entry<HistoryStore.RegionKey, Map<String, List<ChunkHistoryEntry>>> e : regions.entrySet()) {
+            write(e.getKey(), e.getValue(), e.getValue().keySet());
+            keep.add(file(e.getKey()));
+        }
+        for (File f : regionFiles()) {
+            if (!keep.contains(f)) Files.deleteIfExists(f.toPath());
+        }
+    }
+
+    private Map<String, List<ChunkHistoryEntry>> read(File f) throws IOException {
+        if (!f.exists()) return new HashMap<>();
+        try (FileReader reader = new FileReader(f)) {
+            Map<String, List<ChunkHistoryEntry>> data = gson.fromJson(reader, HistoryStore.REGION_TYPE);
+            return data != null ? data : new HashMap<>();
+        } catch (JsonParseException ex) {
+            throw new IOException(f.getName() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private List<File> regionFiles() {
+        List<File> out = new ArrayList<>();
+        File[] worlds = dir.listFiles(File::isDirectory);
+        if (worlds == null) return out;
+        for (File world : worlds) {
+            File[] files = world.listFiles((d, name) -> name.startsWith("r.") && name.endsWith(".json"));
+            if (files != null) out.addAll(List.of(files));
+        }
+        return out;
+    }
+
+    private File file(HistoryStore.RegionKey key) {
+        return new File(new File(dir, key.world()), "r." + key.x() + "." + key.z() + ".json");
+    }
+}
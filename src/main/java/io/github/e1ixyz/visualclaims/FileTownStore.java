@@ -0,0 +1,162 @@
+package io.github.e1ixyz.visualclaims;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// One file per town in towns/ (<uuid>.json or <uuid>.vct, see storage-format); documents are <name>.json in the
+// data folder.
+public class FileTownStore implements TownStore {
+    private static final int LOAD_MAX_THREADS = 8;
+
+    private final VisualClaims plugin;
+    private final File townsDir;
+    private final Gson gson;
+    private final TownFormat format;
+
+    public FileTownStore(VisualClaims plugin, File townsDir, Gson gson, TownFormat format) {
+        this.plugin = plugin;
+        this.townsDir = townsDir;
+        this.gson = gson;
+        this.format = format;
+    }
+
+    @Override
+    public String describe() {
+        return "files (" + format.name().toLowerCase(Locale.ROOT) + ")";
+    }
+
+    // Parses and normalizes town files on a bounded worker pool. Both formats can exist after a format switch;
+    // the newer snapshot wins and is rewritten, which removes the stale file.
+    @Override
+    public List<Town> loadAll(Set<UUID> rewrite) {
+        if (!townsDir.exists()) townsDir.mkdirs();
+        File[] files = townsDir.listFiles((d, name) -> TownFormat.fromFileName(name) != null);
+        if (files == null || files.length == 0) return Collections.emptyList();
+        int threads = Math.max(1, Math.min(Math.min(files.length, LOAD_MAX_THREADS), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "VisualClaims-TownLoader");
+            t.setDaemon(true);
+            return t;
+        });
+        // owner -> newest town seen so far
+        Map<UUID, Town> towns = new LinkedHashMap<>();
+        try {
+            List<Future<Loaded>> futures = new ArrayList<>(files.length);
+            for (File f : files) futures.add(pool.submit(() -> load(f)));
+            for (int i = 0; i < files.length; i++) {
+                Town t;
+                boolean changed;
+                try {
+                    Loaded l = futures.get(i).get();
+                    t = l.town();
+                    changed = l.normalized();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    plugin.getLogger().warning("Failed to load town file " + files[i].getName() + ": " + cause.getMessage());
+                    continue;
+                }
+                if (t == null || t.getOwner() == null) continue;
+                if (TownFormat.fromFileName(files[i].getName()) != format) rewrite.add(t.getOwner());
+                Town existing = towns.get(t.getOwner());
+                if (existing != null) {
+                    rewrite.add(t.getOwner());
+                    if (existing.getJournalSeq() >= t.getJournalSeq()) continue;
+                }
+                towns.put(t.getOwner(), t);
+                if (changed) rewrite.add(t.getOwner());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().severe("Interrupted while loading towns.");
+            return Collections.emptyList();
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ArrayList<>(towns.values());
+    }
+
+    private record Loaded(Town town, boolean normalized) {}
+
+    // Worker thread: touches only the town it just read.
+    private Loaded load(File f) throws IOException {
+        Town t = TownFormat.fromFileName(f.getName()).decode(f, gson);
+        return new Loaded(t, t != null && t.getOwner() != null && TownManager.normalizeLoadedTown(t));
+    }
+
+    @Override
+    public void save(Town snapshot) throws IOException {
+        if (!townsDir.exists()) townsDir.mkdirs();
+        Path target = format.fileFor(townsDir, snapshot.getOwner()).toPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, format.encode(snapshot, gson));
+        TownWriter.moveIntoPlace(tmp, target);
+        deleteExcept(snapshot.getOwner(), format);
+    }
+
+    @Override
+    public void delete(UUID owner) throws IOException {
+        deleteExcept(owner, null);
+    }
+
+    // Writes every town first and only then removes files of owners not in the set, so a failure part-way
+    // leaves the old files in place.
+    @Override
+    public void replaceAll(Collection<Town> towns) throws IOException {
+        Set<UUID> keep = new HashSet<>();
+        for (Town t : towns) {
+            save(t);
+            keep.add(t.getOwner());
+        }
+        File[] files = townsDir.listFiles((d, name) -> TownFormat.fromFileName(name) != null);
+        if (files == null) return;
+        for (File f : files) {
+            String name = f.getName();
+            try {
+                if (keep.contains(UUID.fromString(name.substring(0, name.indexOf('.'))))) continue;
+            } catch (IllegalArgumentException ex) {
+                continue; // not named after an owner, so not a town file this store wrote
+            }
+            Files.deleteIfExists(f.toPath());
+        }
+    }
+
+    @Override
+    public String loadDocument(String name) throws IOException {
+        File f = new File(plugin.getDataFolder(), name + ".json");
+        return f.exists() ? new String(Files.readAllBytes(f.toPath()), Charset.defaultCharset()) : null;
+    }
+
+    @Override
+    public void saveDocument(String name, String json) throws IOException {
+        Path target = new File(plugin.getDataFolder(), name + ".json").toPath();
+        Path tmp = target.resolveSibling(name + ".json.tmp");
+        Files.write(tmp, json.getBytes(Charset.defaultCharset()));
+        TownWriter.moveIntoPlace(tmp, target);
+    }
+
+    // Removes the owner's town files in every format other than keep (all of them when keep is null).
+    private void deleteExcept(UUID owner, TownFormat keep) throws IOException {
+        for (TownFormat f : TownFormat.values()) {
+            if (f != keep) Files.deleteIfExists(f.fileFor(townsDir, owner).toPath());
+        }
+    }
+}
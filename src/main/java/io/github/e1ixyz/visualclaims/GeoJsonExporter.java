@@ -0,0 +1,300 @@
+package io.github.e1ixyz.visualclaims;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Writes claims as static GeoJSON tiles (geojson/<world>/r.<x>.<z>.geojson, 32x32 chunks each, block x/z
+// coordinates) plus geojson/tiles.json listing the non-empty tiles per world. Changed tiles are collected every
+// interval and read from the claim index within a per-tick time budget; tracing and writing happen off the main
+// thread.
+public class GeoJsonExporter implements MapRenderer {
+    private static final int REGION_SHIFT = 5;
+    private static final long IO_TIMEOUT_SECONDS = 30L;
+    private static final Pattern TILE_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.geojson");
+
+    private final VisualClaims plugin;
+    private final File dir;
+    private final Gson gson = new Gson();
+    private final ExecutorService io;
+    // tiles changed since the last flush
+    private final Set<Tile> dirty = new HashSet<>();
+    // tiles of the current flush not read yet, oldest first
+    private final Set<Tile> pending = new LinkedHashSet<>();
+    // world -> tiles currently on disk (I/O thread only)
+    private final Map<String, Set<Tile>> written = new TreeMap<>();
+    private BukkitTask flushTask;
+    private BukkitTask drainTask; // runs every tick while a flush has tiles left
+    private long flushes;
+    private volatile long tilesWritten;
+    private volatile long tilesDeleted;
+
+    private record Tile(String world, int x, int z) {
+        static Tile of(ChunkPos pos) {
+            return new Tile(pos.getWorld(), pos.getX() >> REGION_SHIFT, pos.getZ() >> REGION_SHIFT);
+        }
+
+        File file(File root) {
+            return new File(new File(root, world), "r." + x + "." + z + ".geojson");
+        }
+    }
+
+    // Chunks of one tile drawn with the same town and style.
+    private record Part(UUID owner, String town, MarkerStyle style) {}
+
+    public GeoJsonExporter(VisualClaims plugin, File dir) {
+        this.plugin = plugin;
+        this.dir = dir;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "VisualClaims-GeoJson");
+            t.setDaemon(true);
+            return t;
+        });
+        io.execute(this::scanWritten);
+    }
+
+    public void start(int intervalTicks) {
+        if (flushTask != null) flushTask.cancel();
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, intervalTicks, intervalTicks);
+    }
+
+    @Override
+    public String name() {
+        return "geojson";
+    }
+
+    @Override
+    public void claimsChanged(Collection<ChunkPos> chunks) {
+        for (ChunkPos pos : chunks) dirty.add(Tile.of(pos));
+    }
+
+    // Tiles left on disk from before a restart are rewritten too, so ones that are empty now get deleted.
+    @Override
+    public void refreshAll(Collection<Town> towns) {
+        for (Town t : towns) claimsChanged(t.getClaims());
+        io.execute(() -> {
+            Set<Tile> existing = new HashSet<>();
+            for (Set<Tile> tiles : written.values()) existing.addAll(tiles);
+            Bukkit.getScheduler().runTask(plugin, () -> dirty.addAll(existing));
+        });
+    }
+
+    @Override
+    public List<String> stats() {
+        List<String> out = new ArrayList<>();
+        out.add("§eGeoJSON export (" + dir.getName() + "/)");
+        out.add("§7Dirty tiles: §f" + dirty.size() + " §7Pending: §f" + pending.size() + " §7Flushes: §f" + flushes + " §7Written: §f" + tilesWritten + " §7Deleted: §f" + tilesDeleted);
+        return out;
+    }
+
+    @Override
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+        pending.addAll(dirty);
+        dirty.clear();
+        drain(Long.MAX_VALUE);
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("GeoJSON export did not finish within " + IO_TIMEOUT_SECONDS + "s.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Starts a flush of the tiles changed since the last one, unless the previous flush is still being read.
+    private void flush() {
+        if (!pending.isEmpty() || dirty.isEmpty()) return;
+        pending.addAll(dirty);
+        dirty.clear();
+        flushes++;
+        tick();
+    }
+
+    private void tick() {
+        drain(System.nanoTime() + plugin.getSettings().geojsonBudgetMs() * 1_000_000L);
+        if (pending.isEmpty()) {
+            if (drainTask != null) {
+                drainTask.cancel();
+                drainTask = null;
+            }
+        } else if (drainTask == null) {
+            drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    // Snapshots pending tiles from the claim index until the deadline (at least one tile) and hands the
+    // snapshots to the I/O thread.
+    private void drain(long deadline) {
+        TownManager tm = plugin.getTownManager();
+        if (pending.isEmpty() || tm == null) return;
+        // tile -> parts (empty when the tile no longer holds claims)
+        Map<Tile, Map<Part, List<ChunkPos>>> snapshot = new HashMap<>();
+        Iterator<Tile> it = pending.iterator();
+        while (it.hasNext() && (snapshot.isEmpty() || System.nanoTime() < deadline)) {
+            Tile tile = it.next();
+            it.remove();
+            snapshot.put(tile, snapshotTile(tm, tile));
+        }
+        io.execute(() -> {
+            boolean indexChanged = false;
+            for (Map.Entry<Tile, Map<Part, List<ChunkPos>>> e : snapshot.entrySet()) indexChanged |= writeTile(e.getKey(), e.getValue());
+            if (indexChanged) writeIndex();
+        });
+    }
+
+    private Map<Part, List<ChunkPos>> snapshotTile(TownManager tm, Tile tile) {
+        Map<Part, List<ChunkPos>> parts = new TreeMap<>(Comparator.comparing((Part p) -> p.owner().toString())
+                .thenComparing(p -> p.style().label(), Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingInt(p -> p.style().rgb()));
+        int x0 = tile.x() << REGION_SHIFT;
+        int z0 = tile.z() << REGION_SHIFT;
+        for (int dx = 0; dx < 1 << REGION_SHIFT; dx++) {
+            for (int dz = 0; dz < 1 << REGION_SHIFT; dz++) {
+                Town owner = tm.getOwnerAt(tile.world(), x0 + dx, z0 + dz);
+                if (owner == null) continue;
+                ChunkPos pos = new ChunkPos(tile.world(), x0 + dx, z0 + dz);
+                MarkerStyle style = tm.markerStyle(pos);
+                if (style == null) continue;
+                parts.computeIfAbsent(new Part(owner.getOwner(), owner.getName(), style), k -> new ArrayList<>()).add(pos);
+            }
+        }
+        return parts;
+    }
+
+    // Returns whether the tile appeared or disappeared, i.e. the index needs rewriting.
+    private boolean writeTile(Tile tile, Map<Part, List<ChunkPos>> parts) {
+        File f = tile.file(dir);
+        Set<Tile> worldTiles = written.computeIfAbsent(tile.world(), k -> new HashSet<>());
+        try {
+            if (parts.isEmpty()) {
+                if (Files.deleteIfExists(f.toPath())) tilesDeleted++;
+                return worldTiles.remove(tile);
+            }
+            JsonArray features = new JsonArray();
+            for (Map.Entry<Part, List<ChunkPos>> e : parts.entrySet()) {
+                for (ClaimOutline.Polygon polygon : ClaimOutline.polygons(e.getValue())) features.add(feature(e.getKey(), polygon));
+            }
+            JsonObject collection = new JsonObject();
+            collection.addProperty("type", "FeatureCollection");
+            collection.add("features", features);
+            write(f, gson.toJson(collection));
+            tilesWritten++;
+            return worldTiles.add(tile);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to write GeoJSON tile " + tile.world() + "/" + f.getName() + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    // One Polygon feature: the outer ring followed by its holes; chunks counts this polygon's chunks only.
+    private static JsonObject feature(Part part, ClaimOutline.Polygon polygon) {
+        JsonArray rings = new JsonArray();
+        rings.add(coordinates(polygon.outer()));
+        for (ClaimOutline.Ring hole : polygon.holes()) rings.add(coordinates(hole));
+        JsonObject geometry = new JsonObject();
+        geometry.addProperty("type", "Polygon");
+        geometry.add("coordinates", rings);
+        JsonObject props = new JsonObject();
+        props.addProperty("owner", part.owner().toString());
+        props.addProperty("town", part.town());
+        props.addProperty("label", part.style().label());
+        props.addProperty("color", String.format("#%06x", part.style().rgb() & 0xFFFFFF));
+        props.addProperty("chunks", polygon.chunks());
+        JsonObject feature = new JsonObject();
+        feature.addProperty("type", "Feature");
+        feature.add("geometry", geometry);
+        feature.add("properties", props);
+        return feature;
+    }
+
+    private static JsonArray coordinates(ClaimOutline.Ring ring) {
+        JsonArray coords = new JsonArray();
+        for (int i = 0; i <= ring.x().length; i++) {
+            // GeoJSON rings repeat their first point at the end
+            int k = i % ring.x().length;
+            JsonArray point = new JsonArray();
+            point.add(ring.x()[k]);
+            point.add(ring.z()[k]);
+            coords.add(point);
+        }
+        return coords;
+    }
+
+    private void writeIndex() {
+        JsonObject index = new JsonObject();
+        for (Map.Entry<String, Set<Tile>> e : written.entrySet()) {
+            if (e.getValue().isEmpty()) continue;
+            List<Tile> tiles = new ArrayList<>(e.getValue());
+            tiles.sort(Comparator.comparingInt(Tile::x).thenComparingInt(Tile::z));
+            JsonArray list = new JsonArray();
+            for (Tile t : tiles) {
+                JsonArray xz = new JsonArray();
+                xz.add(t.x());
+                xz.add(t.z());
+                list.add(xz);
+            }
+            index.add(e.getKey(), list);
+        }
+        try {
+            write(new File(dir, "tiles.json"), gson.toJson(index));
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to write GeoJSON tile index: " + ex.getMessage());
+        }
+    }
+
+    private static void write(File f, String json) throws IOException {
+        File parent = f.getParentFile();
+        if (!parent.exists()) parent.mkdirs();
+        Path tmp = new File(parent, f.getName() + ".tmp").toPath();
+        Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+        TownWriter.moveIntoPlace(tmp, f.toPath());
+    }
+
+    private void scanWritten() {
+        File[] worlds = dir.listFiles(File::isDirectory);
+        if (worlds == null) return;
+        for (File w : worlds) {
+            File[] files = w.listFiles();
+            if (files == null) continue;
+            for (File f : files) {
+                Matcher m = TILE_NAME.matcher(f.getName());
+                if (!m.matches()) continue;
+                written.computeIfAbsent(w.getName(), k -> new HashSet<>()).add(new Tile(w.getName(), Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Where HistoryStore keeps chunk history, one 32x32-chunk region at a time (chunk id -> newest-first entries).
+// Every method runs on the history store's single I/O thread.
+public interface HistoryBackend {
+    String describe();
+
+    // The region's stored history; empty when nothing is stored.
+    Map<String, List<ChunkHistoryEntry>> read(HistoryStore.RegionKey key) throws IOException;
+
+    // Stores the region; only the chunks in changed differ from what is stored.
+    void write(HistoryStore.RegionKey key, Map<String, List<ChunkHistoryEntry>> region, Set<String> changed) throws IOException;
+
+    // Every stored chunk's history (migration source).
+    Map<String, List<ChunkHistoryEntry>> readAll() throws IOException;
+
+    // Makes the backend hold exactly these regions (migration target); anything stored before is dropped.
+    void replaceAll(Map<HistoryStore.RegionKey, Map<String, List<ChunkHistoryEntry>>> regions) throws IOException;
+
+    default void close() {}
+}
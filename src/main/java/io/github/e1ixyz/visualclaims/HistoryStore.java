@@ -0,0 +1,469 @@
+package io.github.e1ixyz.visualclaims;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Chunk history sharded by 32x32-chunk region and kept in a HistoryBackend (region files or the sqlite history
+// table). A region is read on the I/O thread on first use and lookups/records wait for it in a callback on the main
+// thread; only startup and shutdown block on a read. A bounded LRU keeps the hot regions in memory, and the
+// changed chunks of a region are written back off the main thread. All backend access happens on the single I/O
+// thread, so a read queued after a write always sees it.
+public class HistoryStore {
+    static final int REGION_SHIFT = 5;
+    static final Type REGION_TYPE = new TypeToken<Map<String, List<ChunkHistoryEntry>>>(){}.getType();
+    private static final long WRITE_BACK_INTERVAL_TICKS = 5 * 20L;
+    private static final long IO_TIMEOUT_SECONDS = 30L;
+
+    private final VisualClaims plugin;
+    private final File legacySnapshot;
+    private final File legacyLog;
+    private final int limit;
+    private final Gson gson = new GsonBuilder().create();
+    private final ExecutorService io;
+    // region -> loaded region, least recently used first
+    private final LinkedHashMap<RegionKey, Region> regions = new LinkedHashMap<>(64, 0.75f, true);
+    // region -> read in flight and the work waiting for it
+    private final Map<RegionKey, PendingLoad> loading = new HashMap<>();
+    private HistoryBackend backend; // swapped on the main thread; queued writes keep the backend they were queued for
+    // region -> latest copy and chunk ids written to the old backend while a migration copy runs (null otherwise)
+    private Map<RegionKey, RegionWrite> writtenDuringCopy;
+    private int maxRegions = 256;
+    private BukkitTask writeBackTask;
+
+    public HistoryStore(VisualClaims plugin, HistoryBackend backend, File legacySnapshot, File legacyLog, int limit) {
+        this.plugin = plugin;
+        this.backend = backend;
+        this.legacySnapshot = legacySnapshot;
+        this.legacyLog = legacyLog;
+        this.limit = limit;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "VisualClaims-History");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        stop();
+        writeBackTask = Bukkit.getScheduler().runTaskTimer(plugin, this::saveDirty, WRITE_BACK_INTERVAL_TICKS, WRITE_BACK_INTERVAL_TICKS);
+    }
+
+    public void stop() {
+        if (writeBackTask != null) {
+            writeBackTask.cancel();
+            writeBackTask = null;
+        }
+    }
+
+    // Calls back on the main thread with the chunk's history, right away when its region is cached.
+    public void get(ChunkPos pos, Consumer<List<ChunkHistoryEntry>> callback) {
+        withRegion(RegionKey.of(pos), r -> callback.accept(r.chunks.getOrDefault(pos.id(), Collections.emptyList())));
+    }
+
+    // Starts reading the chunk's region if it is not cached, so a later get() answers at once.
+    public void prefetch(ChunkPos pos) {
+        withRegion(RegionKey.of(pos), r -> { });
+    }
+
+    // Applied in order once the region is loaded.
+    public void record(ChunkPos pos, ChunkHistoryEntry entry) {
+        withRegion(RegionKey.of(pos), r -> {
+            push(r.chunks, pos.id(), entry);
+            r.changed.add(pos.id());
+        });
+    }
+
+    // Gives every chunk in entries that has no history yet its entry. Runs on the I/O thread straight against the
+    // backend, one region at a time, so neither the main thread nor the LRU cache sees the scan; call it right
+    // after load(), while nothing is cached, so later region reads queue behind it.
+    public void recordMissing(Map<ChunkPos, ChunkHistoryEntry> entries) {
+        if (entries.isEmpty()) return;
+        Map<RegionKey, List<ChunkPos>> split = byRegion(entries.keySet());
+        HistoryBackend target = backend;
+        io.execute(() -> {
+            long start = System.nanoTime();
+            int added = 0;
+            for (Map.Entry<RegionKey, List<ChunkPos>> e : split.entrySet()) {
+                Map<String, List<ChunkHistoryEntry>> data = read(target, e.getKey());
+                Set<String> changed = new HashSet<>();
+                for (ChunkPos pos : e.getValue()) {
+                    List<ChunkHistoryEntry> list = data.get(pos.id());
+                    if (list != null && !list.isEmpty()) continue;
+                    push(data, pos.id(), entries.get(pos));
+                    changed.add(pos.id());
+                }
+                if (changed.isEmpty()) continue;
+                write(target, e.getKey(), data, changed);
+                added += changed.size();
+            }
+            if (added > 0) {
+                plugin.getLogger().info("Bootstrapped history for " + added + " claimed chunks in " + (System.nanoTime() - start) / 1_000_000L + " ms.");
+            }
+        });
+    }
+
+    // Queues a copy of every changed region for writing.
+    public void saveDirty() {
+        for (Map.Entry<RegionKey, Region> e : regions.entrySet()) {
+            if (!e.getValue().changed.isEmpty()) queueWrite(e.getKey(), e.getValue());
+        }
+    }
+
+    // Drops the cache (after queueing its writes to the old backend), switches to next and converts a legacy
+    // history.json/history.log into it.
+    public void load(int maxRegions, HistoryBackend next) {
+        this.maxRegions = Math.max(1, maxRegions);
+        completePending();
+        saveDirty();
+        HistoryBackend previous = backend;
+        backend = next;
+        if (previous != next) io.execute(previous::close);
+        regions.clear();
+        await(() -> {
+            migrateLegacy(next);
+            return null;
+        }, null);
+    }
+
+    // Copies every stored chunk into the backend the opener returns and, once the copy succeeds, makes it the live
+    // backend; region writes that went to the old backend while the copy ran are repeated on the new one. done runs
+    // on the main thread with the number of chunks copied, or -1 when the copy failed and nothing was switched.
+    public void migrateTo(Callable<HistoryBackend> opener, IntConsumer done) {
+        saveDirty();
+        HistoryBackend source = backend;
+        Map<RegionKey, RegionWrite> during = new HashMap<>();
+        writtenDuringCopy = during;
+        io.execute(() -> {
+            int copied = -1;
+            HistoryBackend target = null;
+            try {
+                target = opener.call();
+                Map<String, List<ChunkHistoryEntry>> all = source.readAll();
+                target.replaceAll(byRegionId(all));
+                copied = all.size();
+            } catch (Exception ex) {
+                plugin.getLogger().severe("History migration failed: " + ex.getMessage());
+                if (target != null) target.close();
+                target = null;
+            }
+            int result = copied;
+            HistoryBackend opened = target;
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, () -> finishMigration(source, opened, during, result, done));
+            } else if (opened != null) {
+                opened.close();
+            }
+        });
+    }
+
+    private void finishMigration(HistoryBackend source, HistoryBackend target, Map<RegionKey, RegionWrite> during, int copied, IntConsumer done) {
+        if (writtenDuringCopy == during) writtenDuringCopy = null;
+        if (target == null || backend != source) {
+            if (target != null) io.execute(target::close);
+            done.accept(-1);
+            return;
+        }
+        backend = target;
+        for (Map.Entry<RegionKey, RegionWrite> e : during.entrySet()) {
+            RegionKey key = e.getKey();
+            RegionWrite w = e.getValue();
+            io.execute(() -> write(target, key, w.region(), w.changed()));
+        }
+        io.execute(source::close);
+        done.accept(copied);
+    }
+
+    // Barrier: returns once every queued region write has finished.
+    public void flush() {
+        Future<?> barrier = io.submit(() -> { });
+        try {
+            barrier.get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            plugin.getLogger().severe("Timed out waiting for history writes: " + ex.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        stop();
+        completePending();
+        saveDirty();
+        io.execute(backend::close);
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("History writer did not finish within " + IO_TIMEOUT_SECONDS + "s.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void withRegion(RegionKey key, Consumer<Region> action) {
+        Region r = regions.get(key);
+        if (r != null) {
+            action.accept(r);
+            return;
+        }
+        PendingLoad pending = loading.get(key);
+        if (pending == null) {
+            PendingLoad load = new PendingLoad();
+            loading.put(key, load);
+            HistoryBackend source = backend;
+            io.execute(() -> {
+                Map<String, List<ChunkHistoryEntry>> data = read(source, key);
+                if (plugin.isEnabled()) Bukkit.getScheduler().runTask(plugin, () -> finishLoad(key, load, data));
+            });
+            pending = load;
+        }
+        pending.actions.add(action);
+    }
+
+    private void finishLoad(RegionKey key, PendingLoad load, Map<String, List<ChunkHistoryEntry>> data) {
+        if (loading.get(key) != load) return; // completed by completePending()
+        loading.remove(key);
+        Region r = regions.computeIfAbsent(key, k -> new Region(data));
+        for (Consumer<Region> action : load.actions) action.accept(r);
+        evict();
+    }
+
+    // Before a backend switch or shutdown: reads every region still in flight now, so waiting records are kept.
+    private void completePending() {
+        if (loading.isEmpty()) return;
+        List<Map.Entry<RegionKey, PendingLoad>> pending = new ArrayList<>(loading.entrySet());
+        loading.clear();
+        for (Map.Entry<RegionKey, PendingLoad> e : pending) {
+            Region r = region(e.getKey());
+            for (Consumer<Region> action : e.getValue().actions) action.accept(r);
+        }
+    }
+
+    // Backend switches and shutdown only: blocks the main thread on the read.
+    private Region region(RegionKey key) {
+        Region r = regions.get(key);
+        if (r != null) return r;
+        HistoryBackend source = backend;
+        r = new Region(await(() -> read(source, key), new HashMap<>()));
+        regions.put(key, r);
+        evict();
+        return r;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<RegionKey, Region>> it = regions.entrySet().iterator();
+        while (regions.size() > maxRegions && it.hasNext()) {
+            Map.Entry<RegionKey, Region> eldest = it.next();
+            if (!eldest.getValue().changed.isEmpty()) queueWrite(eldest.getKey(), eldest.getValue());
+            it.remove();
+        }
+    }
+
+    // Runs a read on the I/O thread behind the queued writes and waits for it.
+    private <T> T await(Callable<T> task, T fallback) {
+        try {
+            return io.submit(task).get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            plugin.getLogger().severe("Timed out waiting for history: " + ex.getMessage());
+        }
+        return fallback;
+    }
+
+    // I/O thread.
+    private Map<String, List<ChunkHistoryEntry>> read(HistoryBackend source, RegionKey key) {
+        try {
+            return source.read(key);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to load history region " + key + ": " + ex.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private void queueWrite(RegionKey key, Region r) {
+        Map<String, List<ChunkHistoryEntry>> snapshot = copy(r.chunks);
+        Set<String> changed = new HashSet<>(r.changed);
+        r.changed.clear();
+        HistoryBackend target = backend;
+        io.execute(() -> write(target, key, snapshot, changed));
+        if (writtenDuringCopy != null) {
+            writtenDuringCopy.merge(key, new RegionWrite(snapshot, new HashSet<>(changed)), (old, now) -> {
+                now.changed().addAll(old.changed());
+                return now;
+            });
+        }
+    }
+
+    // I/O thread.
+    private boolean write(HistoryBackend target, RegionKey key, Map<String, List<ChunkHistoryEntry>> region, Set<String> changed) {
+        try {
+            target.write(key, region, changed);
+            return true;
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to save history region " + key + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private void push(Map<String, List<ChunkHistoryEntry>> chunks, String id, ChunkHistoryEntry entry) {
+        List<ChunkHistoryEntry> list = chunks.computeIfAbsent(id, k -> new ArrayList<>());
+        list.add(0, entry);
+        while (list.size() > limit) list.remove(list.size() - 1);
+    }
+
+    // I/O thread.
+    private void migrateLegacy(HistoryBackend target) {
+        if (!legacySnapshot.exists() && !legacyLog.exists()) return;
+        long start = System.nanoTime();
+        Map<String, List<ChunkHistoryEntry>> all = new HashMap<>();
+        if (legacySnapshot.exists()) {
+            try (FileReader reader = new FileReader(legacySnapshot)) {
+                Map<String, List<ChunkHistoryEntry>> data = gson.fromJson(reader, REGION_TYPE);
+                if (data != null) all.putAll(data);
+            } catch (Exception ex) {
+                plugin.getLogger().warning("Failed to read legacy history; leaving it in place: " + ex.getMessage());
+                return;
+            }
+        }
+        if (legacyLog.exists()) {
+            try (BufferedReader r = new BufferedReader(new FileReader(legacyLog))) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    try {
+                        LogLine l = gson.fromJson(line, LogLine.class);
+                        if (l != null && l.chunk != null && l.entry != null) push(all, l.chunk, l.entry);
+                    } catch (RuntimeException ex) {
+                        plugin.getLogger().warning("Skipping malformed history log line: " + line);
+                    }
+                }
+            } catch (IOException ex) {
+                plugin.getLogger().warning("Failed to read legacy history log; leaving it in place: " + ex.getMessage());
+                return;
+            }
+        }
+        Map<RegionKey, Map<String, List<ChunkHistoryEntry>>> split = byRegionId(all);
+        boolean ok = true;
+        for (Map.Entry<RegionKey, Map<String, List<ChunkHistoryEntry>>> e : split.entrySet()) {
+            Map<String, List<ChunkHistoryEntry>> merged = read(target, e.getKey());
+            merged.putAll(e.getValue());
+            ok &= write(target, e.getKey(), merged, e.getValue().keySet());
+        }
+        if (!ok) {
+            plugin.getLogger().warning("Some history regions failed to save; legacy history files were kept.");
+            return;
+        }
+        try {
+            if (legacySnapshot.exists()) {
+                Files.move(legacySnapshot.toPath(), legacySnapshot.toPath().resolveSibling(legacySnapshot.getName() + ".migrated"));
+            }
+            Files.deleteIfExists(legacyLog.toPath());
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to retire legacy history files: " + ex.getMessage());
+        }
+        plugin.getLogger().info("Migrated history for " + all.size() + " chunks into " + split.size() + " regions (" + target.describe() + ") in "
+                + (System.nanoTime() - start) / 1_000_000L + " ms.");
+    }
+
+    private static Map<RegionKey, List<ChunkPos>> byRegion(Collection<ChunkPos> chunks) {
+        Map<RegionKey, List<ChunkPos>> out = new HashMap<>();
+        for (ChunkPos pos : chunks) out.computeIfAbsent(RegionKey.of(pos), k -> new ArrayList<>()).add(pos);
+        return out;
+    }
+
+    // region -> chunk id -> entries; ids that do not parse are dropped
+    private static Map<RegionKey, Map<String, List<ChunkHistoryEntry>>> byRegionId(Map<String, List<ChunkHistoryEntry>> chunks) {
+        Map<RegionKey, Map<String, List<ChunkHistoryEntry>>> out = new HashMap<>();
+        for (Map.Entry<String, List<ChunkHistoryEntry>> e : chunks.entrySet()) {
+            RegionKey key = RegionKey.ofId(e.getKey());
+            if (key != null) out.computeIfAbsent(key, k -> new HashMap<>()).put(e.getKey(), e.getValue());
+        }
+        return out;
+    }
+
+    // Parses a chunk id ("world:x:z"; world names may contain ':').
+    static ChunkPos parseId(String id) {
+        int zSep = id.lastIndexOf(':');
+        int xSep = zSep > 0 ? id.lastIndexOf(':', zSep - 1) : -1;
+        if (xSep < 0) return null;
+        try {
+            return new ChunkPos(id.substring(0, xSep), Integer.parseInt(id.substring(xSep + 1, zSep)), Integer.parseInt(id.substring(zSep + 1)));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static Map<String, List<ChunkHistoryEntry>> copy(Map<String, List<ChunkHistoryEntry>> chunks) {
+        Map<String, List<ChunkHistoryEntry>> out = new HashMap<>(chunks.size() * 2);
+        for (Map.Entry<String, List<ChunkHistoryEntry>> e : chunks.entrySet()) out.put(e.getKey(), new ArrayList<>(e.getValue()));
+        return out;
+    }
+
+    record RegionKey(String world, int x, int z) {
+        static RegionKey of(ChunkPos pos) {
+            return new RegionKey(pos.getWorld(), pos.getX() >> REGION_SHIFT, pos.getZ() >> REGION_SHIFT);
+        }
+
+        static RegionKey ofId(String id) {
+            ChunkPos pos = parseId(id);
+            return pos == null ? null : of(pos);
+        }
+
+        @Override
+        public String toString() {
+            return world + " r." + x + "." + z;
+        }
+    }
+
+    private record RegionWrite(Map<String, List<ChunkHistoryEntry>> region, Set<String> changed) {}
+
+    private static final class PendingLoad {
+        private final List<Consumer<Region>> actions = new ArrayList<>();
+    }
+
+    private static final class Region {
+        private final Map<String, List<ChunkHistoryEntry>> chunks;
+        // chunk ids changed since the region was last queued for writing
+        private final Set<String> changed = new HashSet<>();
+
+        Region(Map<String, List<ChunkHistoryEntry>> chunks) {
+            this.chunks = chunks;
+        }
+    }
+
+    // Line format of the legacy history.log.
+    private static class LogLine {
+        private String chunk;
+        private ChunkHistoryEntry entry;
+
+        LogLine() {}
+    }
+}
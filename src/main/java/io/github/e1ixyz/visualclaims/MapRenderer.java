@@ -0,0 +1,26 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// A map that shows town territory. Deltas only name the chunks that changed; renderers read the current owner
+// and style back through TownManager (getOwnerAt, markerStyle) when they draw. Called on the main thread.
+public interface MapRenderer {
+    // Label and colour of a claimed chunk's map area.
+    record MarkerStyle(String label, int rgb) {}
+
+    String name();
+
+    // Chunks whose owner, label or colour may have changed, batched per operation.
+    void claimsChanged(Collection<ChunkPos> chunks);
+
+    // Redraws every claim (startup, /claimreload).
+    void refreshAll(Collection<Town> towns);
+
+    default List<String> stats() {
+        return Collections.emptyList();
+    }
+
+    void shutdown();
+}
@@ -97,11 +97,13 @@ public class MoveListener implements Listener {
         lastChunkId.remove(id);
         lastAreaLabel.remove(id);
         hiddenChunkMessages.remove(id);
+        townManager.refreshPlaytime(e.getPlayer());
         townManager.removeWarmodeBar(e.getPlayer());
     }
 
     @EventHandler
     public void onJoin(PlayerJoinEvent e) {
+        townManager.refreshPlaytime(e.getPlayer());
         townManager.applyScoreboard(e.getPlayer());
         townManager.applyWarmodeBar(e.getPlayer());
     }
@@ -191,20 +193,23 @@ public class MoveListener implements Listener {
 
     private void handleAutohistory(Player p, ChunkPos pos) {
         if (!autohistory.getOrDefault(p.getUniqueId(), false)) return;
-        List<ChunkHistoryEntry> entries = townManager.getHistoryFor(pos);
-        if (entries.isEmpty()) {
-            p.sendMessage("§7History: none for this chunk.");
-            return;
-        }
-        int shown = Math.min(2, entries.size());
-        StringBuilder sb = new StringBuilder("§7History: ");
-        for (int i = 0; i < shown; i++) {
-            ChunkHistoryEntry e = entries.get(i);
-            if (i > 0) sb.append(" §8| ");
-            String townLabel = townManager.coloredTownName(e.getTownOwner(), e.getTownName());
-            sb.append(e.getAction()).append(" ").append(townLabel).append(" (").append(formatAgo(e.getTimestamp())).append(")");
-        }
-        p.sendMessage(sb.toString());
+        townManager.getHistoryFor(pos, entries -> {
+            if (!p.isOnline()) return;
+            if (entries.isEmpty()) {
+                p.sendMessage("§7History: none for this chunk.");
+                return;
+            }
+            int shown = Math.min(2, entries.size());
+            StringBuilder sb = new StringBuilder("§7History: ");
+            for (int i = 0; i < shown; i++) {
+                ChunkHistoryEntry e = entries.get(i);
+                if (i > 0) sb.append(" §8| ");
+                String townLabel = townManager.coloredTownName(e.getTownOwner(), e.getTownName());
+                sb.append(e.getAction()).append(" ").append(townLabel).append(" (").append(formatAgo(e.getTimestamp())).append(")");
+            }
+            p.sendMessage(sb.toString());
+        });
+        townManager.prefetchHistoryAround(pos);
     }
 
     private void handleAutounclaim(Player p, ChunkPos pos) {
@@ -0,0 +1,109 @@
+package io.github.e1ixyz.visualclaims;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Statistic;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Playtime hours per player. Online players are read from memory on join/quit and on a timer;
+// offline players are read from their stats files off the main thread.
+public class PlaytimeCache {
+    private static final long REFRESH_INTERVAL_TICKS = 60 * 20L;
+
+    private final VisualClaims plugin;
+    private final Map<UUID, Integer> hoursByPlayer = new HashMap<>();
+    private final Set<UUID> loading = new HashSet<>();
+    private BukkitTask refreshTask;
+
+    public PlaytimeCache(VisualClaims plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        stop();
+        refreshTask = Bukkit.getScheduler().runTaskTimer(plugin, this::refreshOnline, REFRESH_INTERVAL_TICKS, REFRESH_INTERVAL_TICKS);
+    }
+
+    public void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+    }
+
+    // Cached hours; unknown offline players report 0 until their async load lands.
+    public int getHours(UUID id) {
+        if (id == null) return 0;
+        Integer hours = hoursByPlayer.get(id);
+        if (hours != null) return hours;
+        Player online = Bukkit.getPlayer(id);
+        if (online != null) return update(online);
+        loadAsync(List.of(id));
+        return 0;
+    }
+
+    public int update(Player p) {
+        int hours = toHours(readTicks(p));
+        hoursByPlayer.put(p.getUniqueId(), hours);
+        return hours;
+    }
+
+    public void refreshOnline() {
+        for (Player p : Bukkit.getOnlinePlayers()) update(p);
+    }
+
+    public void loadAsync(Collection<UUID> ids) {
+        List<UUID> batch = new ArrayList<>();
+        for (UUID id : ids) {
+            if (id != null && !hoursByPlayer.containsKey(id) && loading.add(id)) batch.add(id);
+        }
+        if (batch.isEmpty()) return;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            Map<UUID, Integer> loaded = new HashMap<>();
+            try {
+                for (UUID id : batch) {
+                    try {
+                        loaded.put(id, toHours(readTicks(Bukkit.getOfflinePlayer(id))));
+                    } catch (RuntimeException ex) {
+                        plugin.getLogger().warning("Failed to read playtime for " + id + ": " + ex.getMessage());
+                    }
+                }
+            } finally {
+                // failed ids leave loading too, so the next lookup retries them
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    loading.removeAll(batch);
+                    for (Map.Entry<UUID, Integer> e : loaded.entrySet()) hoursByPlayer.putIfAbsent(e.getKey(), e.getValue());
+                });
+            }
+        });
+    }
+
+    // Whether getHours reflects real playtime rather than the placeholder 0 of a pending load.
+    public boolean isKnown(UUID id) {
+        return id != null && (hoursByPlayer.containsKey(id) || Bukkit.getPlayer(id) != null);
+    }
+
+    private static int readTicks(OfflinePlayer op) {
+        try {
+            return op.getStatistic(Statistic.PLAY_ONE_MINUTE);
+        } catch (IllegalArgumentException ignored) {
+            // Offline player without data; leave at zero.
+            return 0;
+        }
+    }
+
+    private static int toHours(int ticks) {
+        long totalSeconds = (long) ticks / 20L;
+        return (int) (totalSeconds / 3600L);
+    }
+}
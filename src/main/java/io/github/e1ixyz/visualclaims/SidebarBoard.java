@@ -0,0 +1,92 @@
+package io.github.e1ixyz.visualclaims;
+
+import org.bukkit.ChatColor;
+import org.bukkit.scoreboard.DisplaySlot;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.ScoreboardManager;
+import org.bukkit.scoreboard.Team;
+
+import java.util.List;
+
+// A viewer's sidebar, kept for as long as it is shown. Line i is the fixed, invisible entry ENTRIES[i] at score
+// MAX_LINES - i; its text lives in the prefix of team vc_line_i, so a changed line costs one team update and
+// unchanged lines send nothing.
+final class SidebarBoard {
+    static final int MAX_LINES = 15;
+    private static final int MAX_PREFIX = 64;
+    private static final ChatColor[] ENTRIES = new ChatColor[] {
+            ChatColor.BLACK,
+            ChatColor.DARK_BLUE,
+            ChatColor.DARK_GREEN,
+            ChatColor.DARK_AQUA,
+            ChatColor.DARK_RED,
+            ChatColor.DARK_PURPLE,
+            ChatColor.GOLD,
+            ChatColor.GRAY,
+            ChatColor.DARK_GRAY,
+            ChatColor.BLUE,
+            ChatColor.GREEN,
+            ChatColor.AQUA,
+            ChatColor.RED,
+            ChatColor.LIGHT_PURPLE,
+            ChatColor.YELLOW
+    };
+
+    private final Scoreboard board;
+    private final Objective objective;
+    private final Team[] teams = new Team[MAX_LINES];
+    private final String[] shown = new String[MAX_LINES];
+    private String title;
+    private int lineCount;
+
+    SidebarBoard(ScoreboardManager mgr, String title) {
+        this.board = mgr.getNewScoreboard();
+        this.title = title;
+        this.objective = board.registerNewObjective("vc_leaders", "dummy", title);
+        objective.setDisplaySlot(DisplaySlot.SIDEBAR);
+    }
+
+    Scoreboard scoreboard() {
+        return board;
+    }
+
+    // Shows the lines (at most MAX_LINES) and returns how many had to be sent.
+    int update(String newTitle, List<String> lines) {
+        if (!newTitle.equals(title)) {
+            objective.setDisplayName(newTitle);
+            title = newTitle;
+        }
+        int count = Math.min(lines.size(), MAX_LINES);
+        int sent = 0;
+        for (int i = 0; i < count; i++) {
+            String text = fit(lines.get(i));
+            if (text.equals(shown[i])) continue;
+            team(i).setPrefix(text);
+            shown[i] = text;
+            sent++;
+        }
+        for (int i = lineCount; i < count; i++) objective.getScore(ENTRIES[i].toString()).setScore(MAX_LINES - i);
+        for (int i = count; i < lineCount; i++) {
+            board.resetScores(ENTRIES[i].toString());
+            shown[i] = null;
+        }
+        lineCount = count;
+        return sent;
+    }
+
+    private Team team(int i) {
+        if (teams[i] == null) {
+            teams[i] = board.registerNewTeam("vc_line_" + i);
+            teams[i].addEntry(ENTRIES[i].toString());
+        }
+        return teams[i];
+    }
+
+    private static String fit(String line) {
+        String text = line == null ? "" : line;
+        if (text.length() <= MAX_PREFIX) return text;
+        text = text.substring(0, MAX_PREFIX);
+        return text.endsWith(String.valueOf(ChatColor.COLOR_CHAR)) ? text.substring(0, text.length() - 1) : text;
+    }
+}
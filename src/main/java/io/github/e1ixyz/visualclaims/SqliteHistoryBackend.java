@@ -0,0 +1,185 @@
+package io.github.e1ixyz.visualclaims;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Chunk history in the history table of towns.db, one row per entry, on its own connection so history writes do
+// not queue behind town saves. A region is one range scan of the (world, x, z, ts) index and a write replaces
+// only the rows of the chunks that changed.
+public class SqliteHistoryBackend implements HistoryBackend {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS history (world TEXT NOT NULL, x INTEGER NOT NULL, z INTEGER NOT NULL, ts INTEGER NOT NULL,"
+                    + " action TEXT, town TEXT, town_owner TEXT, alliances TEXT, wars TEXT)",
+            "CREATE INDEX IF NOT EXISTS history_by_chunk ON history (world, x, z, ts)"
+    };
+    private static final String COLUMNS = "world, x, z, ts, action, town, town_owner, alliances, wars";
+    private static final Type NAMES_TYPE = new TypeToken<List<String>>(){}.getType();
+    private static final int REGION_SIZE = 1 << HistoryStore.REGION_SHIFT;
+
+    private final File file;
+    private final Connection db;
+    private final Gson gson = new Gson();
+
+    public SqliteHistoryBackend(File file) throws IOException {
+        this.file = file;
+        try {
+            Class.forName("org.sqlite.JDBC");
+            db = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement st = db.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                st.execute("PRAGMA busy_timeout=" + SqliteTownStore.BUSY_TIMEOUT_MS);
+                for (String sql : SCHEMA) st.execute(sql);
+            }
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("SQLite driver not available on this server");
+        } catch (SQLException ex) {
+            throw new IOException("Failed to open " + file.getName() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "sqlite (" + file.getName() + ")";
+    }
+
+    @Override
+    public Map<String, List<ChunkHistoryEntry>> read(HistoryStore.RegionKey key) throws IOException {
+        int minX = key.x() << HistoryStore.REGION_SHIFT;
+        int minZ = key.z() << HistoryStore.REGION_SHIFT;
+        try (PreparedStatement ps = db.prepareStatement("SELECT " + COLUMNS + " FROM history WHERE world = ?"
+                + " AND x BETWEEN ? AND ? AND z BETWEEN ? AND ? ORDER BY ts DESC, rowid DESC")) {
+            ps.setString(1, key.world());
+            ps.setInt(2, minX);
+            ps.setInt(3, minX + REGION_SIZE - 1);
+            ps.setInt(4, minZ);
+            ps.setInt(5, minZ + REGION_SIZE - 1);
+            return collect(ps);
+        } catch (SQLException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void write(HistoryStore.RegionKey key, Map<String, List<ChunkHistoryEntry>> region, Set<String> changed) throws IOException {
+        try {
+            db.setAutoCommit(false);
+            try (PreparedStatement del = db.prepareStatement("DELETE FROM history WHERE world = ? AND x = ? AND z = ?");
+                 PreparedStatement ins = insert()) {
+                for (String id : changed) {
+                    ChunkPos pos = HistoryStore.parseId(id);
+                    if (pos == null) continue;
+                    del.setString(1, pos.getWorld());
+                    del.setInt(2, pos.getX());
+                    del.setInt(3, pos.getZ());
+                    del.addBatch();
+                    addEntries(ins, pos, region.get(id));
+                }
+                del.executeBatch();
+                ins.executeBatch();
+            }
+            db.commit();
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Map<String, List<ChunkHistoryEntry>> readAll() throws IOException {
+        try (PreparedStatement ps = db.prepareStatement("SELECT " + COLUMNS + " FROM history ORDER BY ts DESC, rowid DESC")) {
+            return collect(ps);
+        } catch (SQLException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void replaceAll(Map<HistoryStore.RegionKey, Map<String, List<ChunkHistoryEntry>>> regions) throws IOException {
+        try {
+            db.setAutoCommit(false);
+            try (Statement st = db.createStatement()) {
+                st.executeUpdate("DELETE FROM history");
+            }
+            try (PreparedStatement ins = insert()) {
+                for (Map<String, List<ChunkHistoryEntry>> region : regions.values()) {
+                    for (Map.Entry<String, List<ChunkHistoryEntry>> e : region.entrySet()) {
+                        ChunkPos pos = HistoryStore.parseId(e.getKey());
+                        if (pos != null) addEntries(ins, pos, e.getValue());
+                    }
+                }
+                ins.executeBatch();
+            }
+            db.commit();
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            db.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private PreparedStatement insert() throws SQLException {
+        return db.prepareStatement("INSERT INTO history (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    // Oldest first, so entries with the same timestamp read back newest first by rowid.
+    private void addEntries(PreparedStatement ins, ChunkPos pos, List<ChunkHistoryEntry> entries) throws SQLException {
+        if (entries == null) return;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            ChunkHistoryEntry entry = entries.get(i);
+            ins.setString(1, pos.getWorld());
+            ins.setInt(2, pos.getX());
+            ins.setInt(3, pos.getZ());
+            ins.setLong(4, entry.getTimestamp());
+            ins.setString(5, entry.getAction());
+            ins.setString(6, entry.getTownName());
+            ins.setString(7, entry.getTownOwner() == null ? null : entry.getTownOwner().toString());
+            ins.setString(8, gson.toJson(entry.getAlliances()));
+            ins.setString(9, gson.toJson(entry.getWars()));
+            ins.addBatch();
+        }
+    }
+
+    private Map<String, List<ChunkHistoryEntry>> collect(PreparedStatement ps) throws SQLException {
+        Map<String, List<ChunkHistoryEntry>> out = new HashMap<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String id = new ChunkPos(rs.getString(1), rs.getInt(2), rs.getInt(3)).id();
+                String owner = rs.getString(7);
+                out.computeIfAbsent(id, k -> new ArrayList<>()).add(new ChunkHistoryEntry(rs.getLong(4), rs.getString(5), rs.getString(6),
+                        owner == null ? null : UUID.fromString(owner), gson.fromJson(rs.getString(8), NAMES_TYPE), gson.fromJson(rs.getString(9), NAMES_TYPE)));
+            }
+        }
+        return out;
+    }
+
+    private void rollback() {
+        try {
+            db.rollback();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Embedded single-file database (towns.db) using the SQLite driver bundled with Paper; no server needed.
+// Claims, members and relations live in their own indexed tables. A save writes only the rows that differ
+// from what the store last wrote for that town, so claiming one chunk is one INSERT.
+public class SqliteTownStore implements TownStore {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS towns (owner TEXT PRIMARY KEY, name TEXT, world TEXT, color TEXT, description TEXT,"
+                    + " bonus_chunks INTEGER NOT NULL, contested_spent INTEGER NOT NULL, kills INTEGER NOT NULL,"
+                    + " reputation INTEGER NOT NULL, reputation_initialized INTEGER NOT NULL, created_at INTEGER NOT NULL,"
+                    + " capital_set_at INTEGER NOT NULL, journal_seq INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS claims (owner TEXT NOT NULL, world TEXT NOT NULL, x INTEGER NOT NULL, z INTEGER NOT NULL,"
+                    + " capital INTEGER NOT NULL, PRIMARY KEY (owner, world, x, z))",
+            "CREATE INDEX IF NOT EXISTS claims_by_chunk ON claims (world, x, z)",
+            "CREATE TABLE IF NOT EXISTS members (owner TEXT NOT NULL, member TEXT NOT NULL, PRIMARY KEY (owner, member))",
+            "CREATE INDEX IF NOT EXISTS members_by_member ON members (member)",
+            // kind: A = ally, W = war
+            "CREATE TABLE IF NOT EXISTS relations (owner TEXT NOT NULL, other TEXT NOT NULL, kind TEXT NOT NULL,"
+                    + " PRIMARY KEY (owner, other, kind))",
+            "CREATE TABLE IF NOT EXISTS documents (name TEXT PRIMARY KEY, body TEXT NOT NULL)"
+    };
+    // how long a write waits for the history connection's transaction on the same file
+    static final int BUSY_TIMEOUT_MS = 5000;
+    private static final String[] CHILD_TABLES = {"claims", "members", "relations"};
+
+    private final File file;
+    private final Connection db;
+    // owner -> child rows as last written or loaded (I/O thread after loadAll)
+    private final Map<UUID, Rows> stored = new HashMap<>();
+
+    // A town's claims (chunk -> capital flag), members and relations ("A:<uuid>" / "W:<uuid>").
+    private record Rows(Map<ChunkPos, Boolean> claims, Set<UUID> members, Set<String> relations) {
+        static Rows of(Town t) {
+            Map<ChunkPos, Boolean> claims = new HashMap<>();
+            for (ChunkPos pos : t.getClaims()) claims.put(pos, t.isCapitalChunk(pos));
+            Set<String> relations = new HashSet<>();
+            for (UUID other : t.getAllies()) relations.add("A:" + other);
+            for (UUID other : t.getWars()) relations.add("W:" + other);
+            return new Rows(claims, new HashSet<>(t.getMembers()), relations);
+        }
+    }
+
+    public SqliteTownStore(File file) throws IOException {
+        this.file = file;
+        try {
+            Class.forName("org.sqlite.JDBC");
+            db = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement st = db.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                st.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS);
+                for (String sql : SCHEMA) st.execute(sql);
+            }
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("SQLite driver not available on this server");
+        } catch (SQLException ex) {
+            throw new IOException("Failed to open " + file.getName() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "sqlite (" + file.getName() + ")";
+    }
+
+    @Override
+    public List<Town> loadAll(Set<UUID> rewrite) throws IOException {
+        // owner -> town
+        Map<UUID, Town> towns = new LinkedHashMap<>();
+        try (Statement st = db.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT * FROM towns")) {
+                while (rs.next()) {
+                    UUID owner = UUID.fromString(rs.getString("owner"));
+                    Town t = new Town(owner, rs.getString("name"), rs.getString("world"), rs.getString("color"));
+                    t.setDescription(rs.getString("description"));
+                    t.setBonusChunks(rs.getInt("bonus_chunks"));
+                    t.setContestedClaimsSpent(rs.getInt("contested_spent"));
+                    t.setKills(rs.getInt("kills"));
+                    t.setReputation(rs.getInt("reputation"));
+                    t.setReputationInitialized(rs.getInt("reputation_initialized") != 0);
+                    t.setCreatedAt(rs.getLong("created_at"));
+                    t.setCapitalSetAt(rs.getLong("capital_set_at"));
+                    t.setJournalSeq(rs.getLong("journal_seq"));
+                    towns.put(owner, t);
+                }
+            }
+            // owner -> capital chunks
+            Map<UUID, Set<ChunkPos>> capitals = new LinkedHashMap<>();
+            try (ResultSet rs = st.executeQuery("SELECT owner, world, x, z, capital FROM claims")) {
+                while (rs.next()) {
+                    UUID owner = UUID.fromString(rs.getString(1));
+                    Town t = towns.get(owner);
+                    if (t == null) continue;
+                    ChunkPos pos = new ChunkPos(rs.getString(2), rs.getInt(3), rs.getInt(4));
+                    t.addClaim(pos);
+                    if (rs.getInt(5) != 0) capitals.computeIfAbsent(owner, k -> new HashSet<>()).add(pos);
+                }
+            }
+            for (Map.Entry<UUID, Set<ChunkPos>> e : capitals.entrySet()) towns.get(e.getKey()).setCapitalClaims(e.getValue());
+            try (ResultSet rs = st.executeQuery("SELECT owner, member FROM members")) {
+                while (rs.next()) {
+                    Town t = towns.get(UUID.fromString(rs.getString(1)));
+                    if (t != null) t.addMember(UUID.fromString(rs.getString(2)));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("SELECT owner, other, kind FROM relations")) {
+                while (rs.next()) {
+                    Town t = towns.get(UUID.fromString(rs.getString(1)));
+                    if (t == null) continue;
+                    UUID other = UUID.fromString(rs.getString(2));
+                    if ("W".equals(rs.getString(3))) t.addWar(other);
+                    else t.addAlly(other);
+                }
+            }
+        } catch (SQLException | IllegalArgumentException ex) {
+            throw new IOException("Failed to read " + file.getName() + ": " + ex.getMessage(), ex);
+        }
+        stored.clear();
+        for (Town t : towns.values()) {
+            stored.put(t.getOwner(), Rows.of(t)); // the rows as stored, before normalization
+            if (TownManager.normalizeLoadedTown(t)) rewrite.add(t.getOwner());
+        }
+        return new ArrayList<>(towns.values());
+    }
+
+    @Override
+    public void save(Town t) throws IOException {
+        String owner = t.getOwner().toString();
+        Rows want = Rows.of(t);
+        try {
+            Rows had = stored.get(t.getOwner());
+            if (had == null) had = readRows(owner);
+            db.setAutoCommit(false);
+            upsertTownRow(t);
+            try (PreparedStatement del = db.prepareStatement("DELETE FROM claims WHERE owner = ? AND world = ? AND x = ? AND z = ?");
+                 PreparedStatement ins = db.prepareStatement("INSERT OR REPLACE INTO claims VALUES (?, ?, ?, ?, ?)")) {
+                for (ChunkPos pos : had.claims().keySet()) {
+                    if (want.claims().containsKey(pos)) continue;
+                    del.setString(1, owner);
+                    del.setString(2, pos.getWorld());
+                    del.setInt(3, pos.getX());
+                    del.setInt(4, pos.getZ());
+                    del.addBatch();
+                }
+                for (Map.Entry<ChunkPos, Boolean> e : want.claims().entrySet()) {
+                    // new chunks and chunks whose capital flag changed
+                    if (e.getValue().equals(had.claims().get(e.getKey()))) continue;
+                    ins.setString(1, owner);
+                    ins.setString(2, e.getKey().getWorld());
+                    ins.setInt(3, e.getKey().getX());
+                    ins.setInt(4, e.getKey().getZ());
+                    ins.setInt(5, e.getValue() ? 1 : 0);
+                    ins.addBatch();
+                }
+                del.executeBatch();
+                ins.executeBatch();
+            }
+            try (PreparedStatement del = db.prepareStatement("DELETE FROM members WHERE owner = ? AND member = ?");
+                 PreparedStatement ins = db.prepareStatement("INSERT INTO members VALUES (?, ?)")) {
+                for (UUID member : had.members()) {
+                    if (want.members().contains(member)) continue;
+                    del.setString(1, owner);
+                    del.setString(2, member.toString());
+                    del.addBatch();
+                }
+                for (UUID member : want.members()) {
+                    if (had.members().contains(member)) continue;
+                    ins.setString(1, owner);
+                    ins.setString(2, member.toString());
+                    ins.addBatch();
+                }
+                del.executeBatch();
+                ins.executeBatch();
+            }
+            try (PreparedStatement del = db.prepareStatement("DELETE FROM relations WHERE owner = ? AND other = ? AND kind = ?");
+                 PreparedStatement ins = db.prepareStatement("INSERT INTO relations VALUES (?, ?, ?)")) {
+                for (String rel : had.relations()) {
+                    if (!want.relations().contains(rel)) addRelation(del, owner, rel);
+                }
+                for (String rel : want.relations()) {
+                    if (!had.relations().contains(rel)) addRelation(ins, owner, rel);
+                }
+                del.executeBatch();
+                ins.executeBatch();
+            }
+            db.commit();
+            stored.put(t.getOwner(), want);
+        } catch (SQLException ex) {
+            rollback();
+            stored.remove(t.getOwner()); // re-read the rows on the next save
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    // The town's child rows as stored, for a town this store has not loaded or written yet.
+    private Rows readRows(String owner) throws SQLException {
+        Rows rows = new Rows(new HashMap<>(), new HashSet<>(), new HashSet<>());
+        try (PreparedStatement ps = db.prepareStatement("SELECT world, x, z, capital FROM claims WHERE owner = ?")) {
+            ps.setString(1, owner);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.claims().put(new ChunkPos(rs.getString(1), rs.getInt(2), rs.getInt(3)), rs.getInt(4) != 0);
+            }
+        }
+        try (PreparedStatement ps = db.prepareStatement("SELECT member FROM members WHERE owner = ?")) {
+            ps.setString(1, owner);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.members().add(UUID.fromString(rs.getString(1)));
+            }
+        }
+        try (PreparedStatement ps = db.prepareStatement("SELECT kind, other FROM relations WHERE owner = ?")) {
+            ps.setString(1, owner);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.relations().add(rs.getString(1) + ":" + rs.getString(2));
+            }
+        }
+        return rows;
+    }
+
+    private static void addRelation(PreparedStatement ps, String owner, String rel) throws SQLException {
+        ps.setString(1, owner);
+        ps.setString(2, rel.substring(2));
+        ps.setString(3, rel.substring(0, 1));
+        ps.addBatch();
+    }
+
+    // Empties every table and inserts the towns in one transaction, so the target never mixes old and new rows.
+    @Override
+    public void replaceAll(Collection<Town> towns) throws IOException {
+        try {
+            db.setAutoCommit(false);
+            try (Statement st = db.createStatement()) {
+                st.executeUpdate("DELETE FROM towns");
+                for (String table : CHILD_TABLES) st.executeUpdate("DELETE FROM " + table);
+            }
+            for (Town t : towns) {
+                upsertTownRow(t);
+                insertChildren(t);
+            }
+            db.commit();
+            stored.clear();
+            for (Town t : towns) stored.put(t.getOwner(), Rows.of(t));
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public String loadDocument(String name) throws IOException {
+        try (PreparedStatement ps = db.prepareStatement("SELECT body FROM documents WHERE name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void saveDocument(String name, String json) throws IOException {
+        try {
+            db.setAutoCommit(false);
+            try (PreparedStatement ps = db.prepareStatement("INSERT OR REPLACE INTO documents VALUES (?, ?)")) {
+                ps.setString(1, name);
+                ps.setString(2, json);
+                ps.executeUpdate();
+            }
+            db.commit();
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    private void upsertTownRow(Town t) throws SQLException {
+        try (PreparedStatement ps = db.prepareStatement("INSERT OR REPLACE INTO towns VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, t.getOwner().toString());
+            ps.setString(2, t.getName());
+            ps.setString(3, t.getWorld());
+            ps.setString(4, t.getColorName());
+            ps.setString(5, t.getDescription());
+            ps.setInt(6, t.getBonusChunks());
+            ps.setInt(7, t.getContestedClaimsSpent());
+            ps.setInt(8, t.getKills());
+            ps.setInt(9, t.getReputation());
+            ps.setInt(10, t.isReputationInitialized() ? 1 : 0);
+            ps.setLong(11, t.getCreatedAt());
+            ps.setLong(12, t.getCapitalSetAt());
+            ps.setLong(13, t.getJournalSeq());
+            ps.executeUpdate();
+        }
+    }
+
+    private void insertChildren(Town t) throws SQLException {
+        String owner = t.getOwner().toString();
+        try (PreparedStatement ps = db.prepareStatement("INSERT INTO claims VALUES (?, ?, ?, ?, ?)")) {
+            for (ChunkPos pos : t.getClaims()) {
+                ps.setString(1, owner);
+                ps.setString(2, pos.getWorld());
+                ps.setInt(3, pos.getX());
+                ps.setInt(4, pos.getZ());
+                ps.setInt(5, t.isCapitalChunk(pos) ? 1 : 0);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = db.prepareStatement("INSERT INTO members VALUES (?, ?)")) {
+            for (UUID member : t.getMembers()) {
+                ps.setString(1, owner);
+                ps.setString(2, member.toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = db.prepareStatement("INSERT INTO relations VALUES (?, ?, ?)")) {
+            addRelations(ps, owner, t.getAllies(), "A");
+            addRelations(ps, owner, t.getWars(), "W");
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public void delete(UUID owner) throws IOException {
+        try {
+            db.setAutoCommit(false);
+            try (PreparedStatement ps = db.prepareStatement("DELETE FROM towns WHERE owner = ?")) {
+                ps.setString(1, owner.toString());
+                ps.executeUpdate();
+            }
+            deleteChildren(owner.toString());
+            db.commit();
+            stored.remove(owner);
+        } catch (SQLException ex) {
+            rollback();
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            db.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void deleteChildren(String owner) throws SQLException {
+        for (String table : CHILD_TABLES) {
+            try (PreparedStatement ps = db.prepareStatement("DELETE FROM " + table + " WHERE owner = ?")) {
+                ps.setString(1, owner);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static void addRelations(PreparedStatement ps, String owner, Set<UUID> others, String kind) throws SQLException {
+        for (UUID other : others) {
+            ps.setString(1, owner);
+            ps.setString(2, other.toString());
+            ps.setString(3, kind);
+            ps.addBatch();
+        }
+    }
+
+    private void rollback() {
+        try {
+            db.rollback();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -27,6 +27,8 @@ public class Town {
     private int reputation = MAX_REPUTATION;
     private boolean reputationInitialized = false;
     private long capitalSetAt = 0L;
+    private long journalSeq = 0L; // last claim journal record reflected in this snapshot
+    private transient ClaimClusters clusters; // built lazily from claims
 
     // For Gson
     public Town() {}
@@ -75,8 +77,20 @@ public class Town {
         capitalClaims.remove(pos);
     }
 
-    public boolean addClaim(ChunkPos pos) { return claims.add(pos); }
-    public boolean removeClaim(ChunkPos pos) { return claims.remove(pos); }
+    public boolean addClaim(ChunkPos pos) {
+        boolean added = claims.add(pos);
+        if (added && clusters != null) clusters.add(pos);
+        return added;
+    }
+    public boolean removeClaim(ChunkPos pos) {
+        boolean removed = claims.remove(pos);
+        if (removed && clusters != null) clusters.remove(pos);
+        return removed;
+    }
+    public ClaimClusters getClusters() {
+        if (clusters == null) clusters = ClaimClusters.of(claims);
+        return clusters;
+    }
     public boolean addMember(UUID uuid) { return members.add(uuid); }
     public boolean removeMember(UUID uuid) { return members.remove(uuid); }
     public boolean isMember(UUID uuid) { return owner != null && owner.equals(uuid) || members.contains(uuid); }
@@ -104,6 +118,8 @@ public class Town {
     public void setReputationInitialized(boolean reputationInitialized) { this.reputationInitialized = reputationInitialized; }
     public long getCapitalSetAt() { return capitalSetAt; }
     public void setCapitalSetAt(long capitalSetAt) { this.capitalSetAt = capitalSetAt; }
+    public long getJournalSeq() { return journalSeq; }
+    public void setJournalSeq(long journalSeq) { this.journalSeq = journalSeq; }
     public void addReputation(int delta) {
         int next = this.reputation + delta;
         if (next > MAX_REPUTATION) next = MAX_REPUTATION;
@@ -0,0 +1,221 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Compact binary town format (.vct): UUIDs as two longs, a per-file world dictionary, and claims sorted
+// per world with zigzag varint deltas, so a block of adjacent chunks costs about two bytes per claim.
+final class TownBinaryCodec {
+    private static final int MAGIC = 0x56435431; // "VCT1"
+    private static final int VERSION = 1;
+    private static final Comparator<String> WORLD_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private TownBinaryCodec() {}
+
+    static byte[] encode(Town t) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + t.claimCount() * 3);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeUuid(out, t.getOwner());
+        writeString(out, t.getName());
+        writeString(out, t.getWorld());
+        writeString(out, t.getColorName());
+        writeString(out, t.getDescription());
+        writeVarInt(out, zigzag(t.getBonusChunks()));
+        writeVarInt(out, zigzag(t.getContestedClaimsSpent()));
+        writeVarInt(out, zigzag(t.getKills()));
+        writeVarInt(out, zigzag(t.getReputation()));
+        out.writeBoolean(t.isReputationInitialized());
+        out.writeLong(t.getCreatedAt());
+        out.writeLong(t.getCapitalSetAt());
+        writeVarLong(out, t.getJournalSeq());
+
+        List<String> worlds = worldsOf(t.getClaims(), t.getCapitalClaims());
+        writeVarInt(out, worlds.size());
+        for (String w : worlds) writeString(out, w);
+        writeChunks(out, t.getClaims(), worlds);
+        writeChunks(out, t.getCapitalClaims(), worlds);
+
+        writeUuids(out, t.getMembers());
+        writeUuids(out, t.getAllies());
+        writeUuids(out, t.getWars());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Town decode(InputStream raw) throws IOException {
+        DataInputStream in = new DataInputStream(raw);
+        if (in.readInt() != MAGIC) throw new IOException("not a VisualClaims town file");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IOException("unsupported town file version " + version);
+        UUID owner = readUuid(in);
+        String name = readString(in);
+        String world = readString(in);
+        String color = readString(in);
+        Town t = new Town(owner, name, world, color);
+        t.setDescription(readString(in));
+        t.setBonusChunks(unzigzag(readVarInt(in)));
+        t.setContestedClaimsSpent(unzigzag(readVarInt(in)));
+        t.setKills(unzigzag(readVarInt(in)));
+        t.setReputation(unzigzag(readVarInt(in)));
+        t.setReputationInitialized(in.readBoolean());
+        t.setCreatedAt(in.readLong());
+        t.setCapitalSetAt(in.readLong());
+        t.setJournalSeq(readVarLong(in));
+
+        int worldCount = readVarInt(in);
+        String[] worlds = new String[worldCount];
+        for (int i = 0; i < worldCount; i++) worlds[i] = readString(in);
+        for (ChunkPos pos : readChunks(in, worlds)) t.addClaim(pos);
+        t.setCapitalClaims(readChunks(in, worlds));
+
+        for (UUID id : readUuids(in)) t.addMember(id);
+        for (UUID id : readUuids(in)) t.addAlly(id);
+        for (UUID id : readUuids(in)) t.addWar(id);
+        return t;
+    }
+
+    private static List<String> worldsOf(Collection<ChunkPos> claims, Collection<ChunkPos> capital) {
+        Set<String> names = new HashSet<>();
+        for (ChunkPos pos : claims) names.add(pos.getWorld());
+        for (ChunkPos pos : capital) names.add(pos.getWorld());
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(WORLD_ORDER);
+        return sorted;
+    }
+
+    // Grouped by world; within a group chunks are sorted by x then z and stored as deltas from the previous one.
+    private static void writeChunks(DataOutputStream out, Collection<ChunkPos> chunks, List<String> worlds) throws IOException {
+        Map<String, Integer> worldIndex = new HashMap<>();
+        for (int i = 0; i < worlds.size(); i++) worldIndex.put(worlds.get(i), i);
+        Map<Integer, List<ChunkPos>> byWorld = new HashMap<>();
+        for (ChunkPos pos : chunks) byWorld.computeIfAbsent(worldIndex.get(pos.getWorld()), k -> new ArrayList<>()).add(pos);
+        writeVarInt(out, byWorld.size());
+        for (int w = 0; w < worlds.size(); w++) {
+            List<ChunkPos> group = byWorld.get(w);
+            if (group == null) continue;
+            group.sort(Comparator.comparingInt(ChunkPos::getX).thenComparingInt(ChunkPos::getZ));
+            writeVarInt(out, w);
+            writeVarInt(out, group.size());
+            int px = 0;
+            int pz = 0;
+            for (ChunkPos pos : group) {
+                writeVarInt(out, zigzag(pos.getX() - px));
+                writeVarInt(out, zigzag(pos.getZ() - pz));
+                px = pos.getX();
+                pz = pos.getZ();
+            }
+        }
+    }
+
+    private static Set<ChunkPos> readChunks(DataInputStream in, String[] worlds) throws IOException {
+        Set<ChunkPos> out = new HashSet<>();
+        int groups = readVarInt(in);
+        for (int g = 0; g < groups; g++) {
+            int w = readVarInt(in);
+            if (w < 0 || w >= worlds.length) throw new IOException("bad world index " + w);
+            int count = readVarInt(in);
+            int x = 0;
+            int z = 0;
+            for (int i = 0; i < count; i++) {
+                x += unzigzag(readVarInt(in));
+                z += unzigzag(readVarInt(in));
+                out.add(new ChunkPos(worlds[w], x, z));
+            }
+        }
+        return out;
+    }
+
+    private static void writeUuids(DataOutputStream out, Collection<UUID> ids) throws IOException {
+        writeVarInt(out, ids.size());
+        for (UUID id : ids) writeUuid(out, id);
+    }
+
+    private static List<UUID> readUuids(DataInputStream in) throws IOException {
+        int count = readVarInt(in);
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(readUuid(in));
+        return ids;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    // Length-prefixed UTF-8; length 0 encodes null, n + 1 encodes n bytes.
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, b.length + 1);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = readVarInt(in);
+        if (len == 0) return null;
+        byte[] b = new byte[len - 1];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static int zigzag(int v) { return (v << 1) ^ (v >> 31); }
+    private static int unzigzag(int v) { return (v >>> 1) ^ -(v & 1); }
+
+    private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("varint too long");
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0L;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("varlong too long");
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.e1ixyz.visualclaims;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.UUID;
+
+// On-disk encodings for towns/<uuid>.*; selected with storage-format in config.yml.
+public enum TownFormat {
+    JSON(".json"),
+    BINARY(".vct");
+
+    private final String extension;
+
+    TownFormat(String extension) { this.extension = extension; }
+
+    public String extension() { return extension; }
+
+    public File fileFor(File townsDir, UUID owner) {
+        return new File(townsDir, owner.toString() + extension);
+    }
+
+    public byte[] encode(Town t, Gson gson) throws IOException {
+        if (this == BINARY) return TownBinaryCodec.encode(t);
+        // Same charset FileWriter used for the JSON files so existing data reads back unchanged.
+        return gson.toJson(t).getBytes(Charset.defaultCharset());
+    }
+
+    public Town decode(File f, Gson gson) throws IOException {
+        if (this == BINARY) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(f))) {
+                return TownBinaryCodec.decode(in);
+            }
+        }
+        try (JsonReader r = new JsonReader(new BufferedReader(new FileReader(f)))) {
+            return gson.fromJson(r, Town.class);
+        }
+    }
+
+    public Town decode(byte[] data, Gson gson) throws IOException {
+        if (this == BINARY) return TownBinaryCodec.decode(new ByteArrayInputStream(data));
+        return gson.fromJson(new String(data, Charset.defaultCharset()), Town.class);
+    }
+
+    public static TownFormat fromFileName(String name) {
+        for (TownFormat f : values()) {
+            if (name.endsWith(f.extension)) return f;
+        }
+        return null;
+    }
+
+    public static TownFormat fromString(String s) {
+        if (s == null) return JSON;
+        try {
+            return TownFormat.valueOf(s.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return JSON;
+        }
+    }
+}
@@ -7,35 +7,38 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.Statistic;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.boss.BarColor;
 import org.bukkit.boss.BarStyle;
 import org.bukkit.boss.BossBar;
 import org.bukkit.entity.Player;
-import org.bukkit.scoreboard.DisplaySlot;
-import org.bukkit.scoreboard.Objective;
-import org.bukkit.scoreboard.Scoreboard;
 import org.bukkit.scoreboard.ScoreboardManager;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class TownManager {
     private final VisualClaims plugin;
-    private final DynmapHook dynmap;
+    private final List<MapRenderer> renderers;
     private final File townsDir;
-    private final File historyFile;
-    private final File statsFile;
     private final File silentVisitFile;
-    private final File contestsFile;
-    private final File contestImmunityFile;
     private final Gson gson;
 
     private static final int HISTORY_LIMIT = 10;
+    private boolean migrating = false;
+    // documents kept in the town store next to the towns
+    private static final String STATS_DOC = "player-stats";
+    private static final String CONTESTS_DOC = "contests";
+    private static final String CONTEST_IMMUNITY_DOC = "contest-immunity";
     private static final long INVITE_TTL_MS = 10 * 60 * 1000L;
     private static final long ALLIANCE_INVITE_TTL_MS = 10 * 60 * 1000L;
     private static final long CONTEST_DURATION_MS = 60 * 60 * 1000L;
@@ -45,24 +48,15 @@ public class TownManager {
     private static final long MIN_TOWN_AGE_MS = 24 * 60 * 60 * 1000L;
     private static final long CAPITAL_COOLDOWN_MS = 7 * 24 * 60 * 60 * 1000L;
     private static final long RPS_TTL_MS = 60 * 1000L;
-    private static final ChatColor[] SCOREBOARD_SUFFIXES = new ChatColor[] {
-            ChatColor.BLACK,
-            ChatColor.DARK_BLUE,
-            ChatColor.DARK_GREEN,
-            ChatColor.DARK_AQUA,
-            ChatColor.DARK_RED,
-            ChatColor.DARK_PURPLE,
-            ChatColor.GOLD,
-            ChatColor.GRAY,
-            ChatColor.DARK_GRAY,
-            ChatColor.BLUE,
-            ChatColor.GREEN,
-            ChatColor.AQUA,
-            ChatColor.RED,
-            ChatColor.LIGHT_PURPLE,
-            ChatColor.YELLOW,
-            ChatColor.WHITE
-    };
+    private static final long STATS_FLUSH_INTERVAL_TICKS = 30 * 20L;
+    // Leaderboard refresh reasons, each naming the sections it invalidates; personal stat lines are always rebuilt.
+    public static final int LB_KILLS = 1;       // top kills
+    public static final int LB_CLAIMS = 1 << 1; // top claims and claim counts
+    public static final int LB_ALLIANCES = 1 << 2;
+    public static final int LB_CONTESTS = 1 << 3; // contest lines and who sees them (start/end)
+    public static final int LB_STATS = 1 << 4;  // personal kills/deaths only
+    public static final int LB_CONTEST_TIMER = 1 << 5; // contest time left only; participants' lines
+    public static final int LB_ALL = LB_KILLS | LB_CLAIMS | LB_ALLIANCES | LB_CONTESTS | LB_STATS | LB_CONTEST_TIMER;
     enum ScoreboardMode {
         OFF,
         LEADERBOARD,
@@ -73,18 +67,17 @@ public class TownManager {
     private final Map<UUID, Town> townsByOwner = new HashMap<>();
     // owner or member UUID -> Town
     private final Map<UUID, Town> townsByMember = new HashMap<>();
-    // chunkId -> Town
-    private final Map<String, Town> townsByChunkId = new HashMap<>();
+    // world -> packed chunk key -> Town
+    private final Map<String, LongObjectMap<Town>> claimIndex = new HashMap<>();
     // pending invites to join towns: target -> invite
     private final Map<UUID, TownInvite> pendingInvites = new HashMap<>();
     // pending alliance invites: targetOwner -> invite
     private final Map<UUID, AllianceInvite> pendingAllianceInvites = new HashMap<>();
-    // chunkId -> history entries (newest first)
-    private final Map<String, List<ChunkHistoryEntry>> chunkHistory = new HashMap<>();
     // players who enabled silent visiting
     private final Set<UUID> silentVisitors = new HashSet<>();
     // per-player stats
-    private final Map<String, PlayerStats> playerStats = new HashMap<>();
+    private final Map<UUID, PlayerStats> playerStats = new HashMap<>();
+    private boolean statsDirty = false;
     // active contests by id
     private final Map<String, ContestState> contestsById = new HashMap<>();
     // chunkId -> contest
@@ -96,8 +89,21 @@ public class TownManager {
     // pending rock-paper-scissors choices by contest id
     private final Map<String, PendingRps> pendingRpsByContest = new HashMap<>();
 
-    private final Map<UUID, Scoreboard> leaderboardBoards = new HashMap<>();
+    private final Map<UUID, SidebarBoard> leaderboardBoards = new HashMap<>();
+    private int leaderboardDirty = LB_ALL;
+    private BukkitTask leaderboardTask;
+    private int scoreboardRefreshTicks = 1;
+    // shared sections from the last pass; rebuilt only when their reason is dirty
+    private List<Town> killsTop = Collections.emptyList();
+    private List<Town> claimsTop = Collections.emptyList();
+    private List<String> allianceLines = Collections.emptyList();
     private final Map<UUID, ScoreboardMode> scoreboardModes = new HashMap<>();
+    private final PlaytimeCache playtime;
+    private final TownWriter townWriter;
+    private final ClaimJournal journal;
+    private final HistoryStore history;
+    // owner -> last computed claim budget
+    private final Map<UUID, ClaimBudget> claimBudgets = new HashMap<>();
     private String scoreboardTitle;
     private String scoreboardTopKillsTitle;
     private String scoreboardTopClaimsTitle;
@@ -115,21 +121,23 @@ public class TownManager {
     private String scoreboardContestEntryFormat;
     private String scoreboardContestPausedText;
     private BukkitTask contestTask;
+    private BukkitTask statsTask;
     private BossBar contestBossBar;
     private boolean warmodeEnabled = false;
     private BossBar warmodeBossBar;
 
-    public TownManager(VisualClaims plugin, DynmapHook dynmap) {
+    public TownManager(VisualClaims plugin, List<MapRenderer> renderers) {
         this.plugin = plugin;
-        this.dynmap = dynmap;
+        this.renderers = renderers;
         this.townsDir = new File(plugin.getDataFolder(), "towns");
         if (!townsDir.exists()) townsDir.mkdirs();
-        this.historyFile = new File(plugin.getDataFolder(), "history.json");
-        this.statsFile = new File(plugin.getDataFolder(), "player-stats.json");
         this.silentVisitFile = new File(plugin.getDataFolder(), "silent-visitors.json");
-        this.contestsFile = new File(plugin.getDataFolder(), "contests.json");
-        this.contestImmunityFile = new File(plugin.getDataFolder(), "contest-immunity.json");
         this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.playtime = new PlaytimeCache(plugin);
+        this.townWriter = new TownWriter(plugin, openStore(plugin.getSettings().storageBackend()), new File(plugin.getDataFolder(), "claims.journal"), townsByOwner::get);
+        this.journal = townWriter.journal();
+        this.history = new HistoryStore(plugin, openHistory(plugin.getSettings().storageBackend()), new File(plugin.getDataFolder(), "history.json"),
+                new File(plugin.getDataFolder(), "history.log"), HISTORY_LIMIT);
     }
 
     private void loadScoreboardSettings() {
@@ -149,6 +157,7 @@ public class TownManager {
         scoreboardYouClaimsFormat = plugin.getConfig().getString("scoreboard.you-claims-format", "&fClaims: &e{value}");
         scoreboardContestEntryFormat = plugin.getConfig().getString("scoreboard.contest-entry-format", "&f{index}. {defender} &7vs {challenger} &7({chunks}) &e{time}{paused}");
         scoreboardContestPausedText = colorize(plugin.getConfig().getString("scoreboard.contest-paused-text", "&c paused"));
+        scoreboardRefreshTicks = Math.max(1, plugin.getConfig().getInt("scoreboard.refresh-interval-ticks", 1));
     }
 
     private String colorize(String input) {
@@ -166,7 +175,76 @@ public class TownManager {
     public Optional<Town> getTownByOwner(UUID owner) { return Optional.ofNullable(townsByOwner.get(owner)); }
     public Optional<Town> getTownOf(UUID uuid) { return Optional.ofNullable(townsByMember.get(uuid)); }
     public Optional<Town> getTownAt(Chunk c) {
-        return Optional.ofNullable(townsByChunkId.get(new ChunkPos(c.getWorld().getName(), c.getX(), c.getZ()).id()));
+        return Optional.ofNullable(getOwnerAt(c.getWorld().getName(), c.getX(), c.getZ()));
+    }
+    public Optional<Town> getTownAt(World world, int chunkX, int chunkZ) {
+        if (world == null) return Optional.empty();
+        return Optional.ofNullable(getOwnerAt(world.getName(), chunkX, chunkZ));
+    }
+    public Optional<Town> getTownAt(ChunkPos pos) {
+        if (pos == null) return Optional.empty();
+        return Optional.ofNullable(getOwnerAt(pos.getWorld(), pos.getX(), pos.getZ()));
+    }
+
+    // Allocation-free owner lookup; null when unclaimed.
+    public Town getOwnerAt(String world, int chunkX, int chunkZ) {
+        LongObjectMap<Town> byKey = claimIndex.get(world);
+        return byKey == null ? null : byKey.get(ChunkPos.key(chunkX, chunkZ));
+    }
+
+    // Removes blocks the source may not break; each distinct chunk is resolved once, in a single pass.
+    public int filterProtectedBlocks(List<Block> blocks, Player source) {
+        if (blocks == null || blocks.isEmpty()) return 0;
+        if (source != null && source.hasPermission("visclaims.admin")) return 0;
+        int before = blocks.size();
+        blocks.removeIf(new ProtectedBlockFilter(source != null ? source.getUniqueId() : null));
+        return before - blocks.size();
+    }
+
+    private class ProtectedBlockFilter implements Predicate<Block> {
+        private final UUID sourceId;
+        private final LongObjectMap<Boolean> verdicts = new LongObjectMap<>();
+        private String world;
+        private LongObjectMap<Town> claims;
+        private long lastKey;
+        private Boolean lastVerdict;
+
+        private ProtectedBlockFilter(UUID sourceId) {
+            this.sourceId = sourceId;
+        }
+
+        @Override
+        public boolean test(Block block) {
+            if (block == null) return false;
+            String w = block.getWorld().getName();
+            if (!w.equals(world)) {
+                world = w;
+                claims = claimIndex.get(w);
+                verdicts.clear();
+                lastVerdict = null;
+            }
+            if (claims == null) return false;
+            long key = ChunkPos.key(block.getX() >> 4, block.getZ() >> 4);
+            if (lastVerdict != null && key == lastKey) return lastVerdict;
+            Boolean verdict = verdicts.get(key);
+            if (verdict == null) {
+                Town owner = claims.get(key);
+                verdict = owner != null && (sourceId == null || !owner.isMember(sourceId));
+                verdicts.put(key, verdict);
+            }
+            lastKey = key;
+            lastVerdict = verdict;
+            return verdict;
+        }
+    }
+
+    private void indexClaim(ChunkPos pos, Town t) {
+        claimIndex.computeIfAbsent(pos.getWorld(), k -> new LongObjectMap<>()).put(pos.key(), t);
+    }
+
+    private Town unindexClaim(ChunkPos pos) {
+        LongObjectMap<Town> byKey = claimIndex.get(pos.getWorld());
+        return byKey == null ? null : byKey.remove(pos.key());
     }
 
     public Optional<Town> findTown(String query) {
@@ -201,10 +279,11 @@ public class TownManager {
         if (townsByMember.containsKey(owner)) return false;
         if (isTownNameTaken(name, null)) return false;
         Town t = new Town(owner, name, world, color.name());
+        t.setJournalSeq(journal.lastSeq());
         townsByOwner.put(owner, t);
         indexTown(t);
         saveTown(t);
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_KILLS | LB_CLAIMS);
         return true;
     }
 
@@ -213,22 +292,24 @@ public class TownManager {
         UUID owner = t.getOwner();
         removeContestsForTown(owner);
         townsByOwner.remove(owner);
-        for (ChunkPos pos : new HashSet<>(t.getClaims())) {
-            townsByChunkId.remove(pos.id());
-            if (dynmap != null) dynmap.removeAreaMarker(pos);
+        Set<ChunkPos> claims = new HashSet<>(t.getClaims());
+        for (ChunkPos pos : claims) {
+            unindexClaim(pos);
             recordHistory(pos, "ADMIN-DELETE", t);
         }
+        updateChunkMarkers(claims);
         townsByMember.remove(owner);
         for (UUID m : new HashSet<>(t.getMembers())) townsByMember.remove(m);
         for (Town other : townsByOwner.values()) {
-            other.getAllies().remove(owner);
-            other.getWars().remove(owner);
+            if (other.getAllies().remove(owner) | other.getWars().remove(owner)) {
+                saveTown(other);
+            }
         }
+        journal.townDeleted(owner);
         pendingInvites.entrySet().removeIf(e -> e.getValue().getTownOwner().equals(owner));
         pendingAllianceInvites.entrySet().removeIf(e -> e.getValue().getFromOwner().equals(owner) || e.getValue().getToOwner().equals(owner));
-        File f = new File(townsDir, owner.toString() + ".json");
-        if (f.exists()) f.delete();
-        refreshLeaderboardScoreboard();
+        townWriter.delete(owner);
+        markLeaderboardDirty(LB_ALL);
         return true;
     }
 
@@ -237,11 +318,12 @@ public class TownManager {
         if (t == null) return false;
         removeContestsForTown(owner);
 
-        for (ChunkPos pos : new HashSet<>(t.getClaims())) {
-            townsByChunkId.remove(pos.id());
-            if (dynmap != null) dynmap.removeAreaMarker(pos);
+        Set<ChunkPos> claims = new HashSet<>(t.getClaims());
+        for (ChunkPos pos : claims) {
+            unindexClaim(pos);
             recordHistory(pos, "DELETE", t);
         }
+        updateChunkMarkers(claims);
 
         townsByMember.remove(owner);
         for (UUID m : new HashSet<>(t.getMembers())) townsByMember.remove(m);
@@ -251,13 +333,13 @@ public class TownManager {
                 saveTown(other);
             }
         }
+        journal.townDeleted(owner);
 
         pendingInvites.entrySet().removeIf(e -> e.getValue().getTownOwner().equals(owner));
         pendingAllianceInvites.entrySet().removeIf(e -> e.getValue().getFromOwner().equals(owner) || e.getValue().getToOwner().equals(owner));
 
-        File f = new File(townsDir, owner.toString() + ".json");
-        if (f.exists()) f.delete();
-        refreshLeaderboardScoreboard();
+        townWriter.delete(owner);
+        markLeaderboardDirty(LB_ALL);
         return true;
     }
 
@@ -271,15 +353,15 @@ public class TownManager {
         ChunkPos pos = ChunkPos.of(chunk);
         if (isOverOutpostCap(t, bypass)) return false;
         if (wouldExceedOutpostCap(t, pos, bypass)) return false;
-        if (townsByChunkId.containsKey(pos.id())) return false;
+        if (getOwnerAt(pos.getWorld(), pos.getX(), pos.getZ()) != null) return false;
         boolean ok = t.addClaim(pos);
         if (!ok) return false;
-        townsByChunkId.put(pos.id(), t);
-        saveTown(t);
+        indexClaim(pos, t);
+        journal.claim(t, pos);
         if (actor != null) recordPlayerClaim(actor);
-        updateChunkMarker(t, pos);
+        updateChunkMarker(pos);
         recordHistory(pos, "CLAIM", t);
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_CLAIMS);
         return true;
     }
 
@@ -290,11 +372,11 @@ public class TownManager {
 
         t.removeClaim(pos);
         t.removeCapitalClaim(pos);
-        townsByChunkId.remove(pos.id());
-        saveTown(t);
+        unindexClaim(pos);
+        journal.unclaim(t, pos);
         recordHistory(pos, "UNCLAIM", t);
-        if (dynmap != null) dynmap.removeAreaMarker(pos);
-        refreshLeaderboardScoreboard();
+        updateChunkMarker(pos);
+        markLeaderboardDirty(LB_CLAIMS);
         return true;
     }
 
@@ -304,14 +386,14 @@ public class TownManager {
         if (contest != null) {
             resolveContest(contest, null, ContestResolution.EXPIRE);
         }
-        Town t = townsByChunkId.remove(pos.id());
+        Town t = unindexClaim(pos);
         if (t != null) {
             t.removeClaim(pos);
             t.removeCapitalClaim(pos);
-            saveTown(t);
+            journal.unclaim(t, pos);
             recordHistory(pos, "FORCE-UNCLAIM", t);
-            if (dynmap != null) dynmap.removeAreaMarker(pos);
-            refreshLeaderboardScoreboard();
+            updateChunkMarker(pos);
+            markLeaderboardDirty(LB_CLAIMS);
             return true;
         }
         return false;
@@ -346,7 +428,7 @@ public class TownManager {
         t.addMember(player);
         townsByMember.put(player, t);
         pendingInvites.remove(player);
-        saveTown(t);
+        journal.memberAdded(t, player);
         return Optional.of(t);
     }
 
@@ -356,7 +438,7 @@ public class TownManager {
         boolean removed = t.removeMember(member);
         if (removed) {
             townsByMember.remove(member);
-            saveTown(t);
+            journal.memberRemoved(t, member);
         }
         return removed;
     }
@@ -368,7 +450,7 @@ public class TownManager {
         boolean removed = t.removeMember(member);
         if (!removed) return Optional.empty();
         townsByMember.remove(member);
-        saveTown(t);
+        journal.memberRemoved(t, member);
         return Optional.of(t);
     }
 
@@ -402,10 +484,9 @@ public class TownManager {
         }
         a.addAlly(b.getOwner());
         b.addAlly(a.getOwner());
-        saveTown(a);
-        saveTown(b);
+        journal.allied(a, b);
         pendingAllianceInvites.remove(owner);
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_ALLIANCES);
         return true;
     }
 
@@ -425,9 +506,8 @@ public class TownManager {
         if (a == null || b == null) return false;
         boolean changed = a.getAllies().remove(otherOwner) | b.getAllies().remove(owner);
         if (changed) {
-            saveTown(a);
-            saveTown(b);
-            refreshLeaderboardScoreboard();
+            journal.allianceRemoved(a, b);
+            markLeaderboardDirty(LB_ALLIANCES);
         }
         return changed;
     }
@@ -440,52 +520,60 @@ public class TownManager {
         if (a.getWars().contains(targetOwner)) {
             a.removeWar(targetOwner);
             b.removeWar(owner);
+            journal.warEnded(a, b);
         } else {
             a.addWar(targetOwner);
             b.addWar(owner);
+            journal.warDeclared(a, b);
         }
-        saveTown(a);
-        saveTown(b);
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_ALL);
         return true;
     }
 
     public int computeMaxClaims(UUID owner) {
-        int baseMax = plugin.getConfig().getInt("max-claims-per-player", 64);
         Town t = townsByOwner.get(owner);
-        int bonus = (t != null) ? t.getBonusChunks() : 0;
-
-        int theoretical = computeTheoreticalClaims(owner, baseMax, bonus);
+        int theoretical = claimBudget(owner).theoretical();
         int currentClaims = (t != null) ? t.claimCount() : 0;
         return Math.max(theoretical, currentClaims);
     }
 
-    private int computeTheoreticalClaims(UUID owner, int baseMax, int bonus) {
-        int contestedSpent = 0;
-        Town t = townsByOwner.get(owner);
-        if (t != null) contestedSpent = Math.max(0, t.getContestedClaimsSpent());
-        if (!plugin.getConfig().getBoolean("use-playtime-scaling", false)) {
-            return Math.max(0, baseMax + bonus - contestedSpent);
-        }
-
-        int chunksPerHour = Math.max(1, plugin.getConfig().getInt("chunks-per-hour", 2));
-        int hours = getPlaytimeHours(owner);
-        int dynamic = hours * chunksPerHour;
-
-        return Math.max(0, baseMax + dynamic + bonus - contestedSpent);
+    public int computeAllowedOutposts(UUID owner) {
+        return claimBudget(owner).allowedOutposts();
     }
 
-    public int computeAllowedOutposts(UUID owner) {
+    // Budget inputs are compared on every read, so it recomputes only when one of them changed.
+    private ClaimBudget claimBudget(UUID owner) {
         Town t = townsByOwner.get(owner);
-        int baseMax = plugin.getConfig().getInt("max-claims-per-player", 64);
         int bonus = (t != null) ? t.getBonusChunks() : 0;
-        int theoretical = Math.max(1, computeTheoreticalClaims(owner, baseMax, bonus));
+        int contestedSpent = (t != null) ? Math.max(0, t.getContestedClaimsSpent()) : 0;
+        ClaimsConfig cfg = plugin.getSettings();
+        int hours = cfg.usePlaytimeScaling() ? playtime.getHours(owner) : 0;
+        ClaimBudget cached = t != null ? claimBudgets.get(owner) : null;
+        if (cached != null && cached.matches(cfg, hours, bonus, contestedSpent)) return cached;
+        ClaimBudget budget = computeClaimBudget(cfg, hours, bonus, contestedSpent);
+        if (t != null) claimBudgets.put(owner, budget);
+        return budget;
+    }
+
+    private ClaimBudget computeClaimBudget(ClaimsConfig cfg, int hours, int bonus, int contestedSpent) {
+        int dynamic = cfg.usePlaytimeScaling() ? hours * cfg.chunksPerHour() : 0;
+        int theoretical = Math.max(0, cfg.maxClaimsPerPlayer() + dynamic + bonus - contestedSpent);
         // Diminishing-but-unbounded growth: start at ~3 outposts near 512 claims and grow sub-linearly via a log curve.
-        double ratio = Math.max(1.0d, theoretical / 512.0d);
+        double ratio = Math.max(1.0d, Math.max(1, theoretical) / 512.0d);
         double baseOutposts = 3.0d;
         double growth = Math.log(ratio) / Math.log(1.3d); // generous early growth, slower later
         double allowed = baseOutposts + growth;
-        return Math.max(1, (int) Math.round(allowed));
+        int allowedOutposts = Math.max(1, (int) Math.round(allowed));
+        return new ClaimBudget(cfg, hours, bonus, contestedSpent, theoretical, allowedOutposts);
+    }
+
+    private record ClaimBudget(ClaimsConfig config, int playtimeHours, int bonus, int contestedSpent, int theoretical, int allowedOutposts) {
+        boolean matches(ClaimsConfig config, int playtimeHours, int bonus, int contestedSpent) {
+            return this.config == config
+                    && this.playtimeHours == playtimeHours
+                    && this.bonus == bonus
+                    && this.contestedSpent == contestedSpent;
+        }
     }
 
     public boolean isTownOldEnough(Town t) {
@@ -526,10 +614,7 @@ public class TownManager {
     public int computeAvailableClaims(UUID owner) {
         Town t = townsByOwner.get(owner);
         if (t == null) return 0;
-        int baseMax = plugin.getConfig().getInt("max-claims-per-player", 64);
-        int bonus = t.getBonusChunks();
-        int theoretical = computeTheoreticalClaims(owner, baseMax, bonus);
-        return theoretical - t.claimCount();
+        return claimBudget(owner).theoretical() - t.claimCount();
     }
 
     private void notifyDebtCrossing(Town town, int availableBefore, int availableAfter) {
@@ -538,10 +623,12 @@ public class TownManager {
             int debt = Math.max(1, -availableAfter);
             Player p = Bukkit.getPlayer(town.getOwner());
             if (p == null) return;
+            // a budget computed from not-yet-loaded playtime is not a real debt
+            if (plugin.getSettings().usePlaytimeScaling() && !playtime.isKnown(town.getOwner())) return;
             p.sendMessage("§cYou are now in claim debt: §e" + debt + "§c chunks over your limit.");
             p.sendMessage("§cYou cannot claim more chunks until you are out of debt.");
-            boolean scaling = plugin.getConfig().getBoolean("use-playtime-scaling", false);
-            int chunksPerHour = Math.max(1, plugin.getConfig().getInt("chunks-per-hour", 2));
+            boolean scaling = plugin.getSettings().usePlaytimeScaling();
+            int chunksPerHour = plugin.getSettings().chunksPerHour();
             if (scaling) {
                 int hoursNeeded = (int) Math.ceil(debt / (double) chunksPerHour);
                 p.sendMessage("§7Recover by unclaiming §e" + debt + "§7 chunks or playing about §e" + hoursNeeded + "h §7(@" + chunksPerHour + " chunks/hour).");
@@ -553,43 +640,12 @@ public class TownManager {
 
     public boolean isAdjacentToOwnClaim(Town town, ChunkPos pos) {
         if (town == null || town.getClaims() == null || town.getClaims().isEmpty()) return false;
-        int x = pos.getX();
-        int z = pos.getZ();
-        String world = pos.getWorld();
-        int[][] dirs = { {1,0}, {-1,0}, {0,1}, {0,-1} };
-        for (int[] d : dirs) {
-            ChunkPos neighbor = new ChunkPos(world, x + d[0], z + d[1]);
-            if (town.ownsChunk(neighbor)) return true;
-        }
-        return false;
+        return town.getClusters().isAdjacent(pos);
     }
 
     public int countClaimIslands(Town town) {
         if (town == null || town.getClaims() == null || town.getClaims().isEmpty()) return 0;
-        Set<ChunkPos> claims = new HashSet<>(town.getClaims());
-        Set<ChunkPos> visited = new HashSet<>();
-        int islands = 0;
-        for (ChunkPos start : claims) {
-            if (visited.contains(start)) continue;
-            islands++;
-            Deque<ChunkPos> stack = new ArrayDeque<>();
-            stack.push(start);
-            while (!stack.isEmpty()) {
-                ChunkPos cur = stack.pop();
-                if (!visited.add(cur)) continue;
-                int x = cur.getX();
-                int z = cur.getZ();
-                String world = cur.getWorld();
-                int[][] dirs = { {1,0}, {-1,0}, {0,1}, {0,-1} };
-                for (int[] d : dirs) {
-                    ChunkPos neighbor = new ChunkPos(world, x + d[0], z + d[1]);
-                    if (claims.contains(neighbor) && !visited.contains(neighbor)) {
-                        stack.push(neighbor);
-                    }
-                }
-            }
-        }
-        return islands;
+        return town.getClusters().clusterCount();
     }
 
     public int countClaimIslands(UUID owner) {
@@ -613,57 +669,14 @@ public class TownManager {
     }
 
     public List<Set<ChunkPos>> getClaimIslands(Town town) {
-        List<Set<ChunkPos>> clusters = new ArrayList<>();
-        if (town == null || town.getClaims() == null || town.getClaims().isEmpty()) return clusters;
-        Set<ChunkPos> claims = new HashSet<>(town.getClaims());
-        Set<ChunkPos> visited = new HashSet<>();
-        for (ChunkPos start : claims) {
-            if (visited.contains(start)) continue;
-            Set<ChunkPos> cluster = new HashSet<>();
-            Deque<ChunkPos> stack = new ArrayDeque<>();
-            stack.push(start);
-            while (!stack.isEmpty()) {
-                ChunkPos cur = stack.pop();
-                if (!visited.add(cur)) continue;
-                cluster.add(cur);
-                int x = cur.getX();
-                int z = cur.getZ();
-                String world = cur.getWorld();
-                int[][] dirs = { {1,0}, {-1,0}, {0,1}, {0,-1} };
-                for (int[] d : dirs) {
-                    ChunkPos neighbor = new ChunkPos(world, x + d[0], z + d[1]);
-                    if (claims.contains(neighbor) && !visited.contains(neighbor)) {
-                        stack.push(neighbor);
-                    }
-                }
-            }
-            clusters.add(cluster);
-        }
-        return clusters;
+        if (town == null || town.getClaims() == null || town.getClaims().isEmpty()) return new ArrayList<>();
+        return town.getClusters().clusters();
     }
 
     public Set<ChunkPos> getClaimCluster(Town town, ChunkPos start) {
-        Set<ChunkPos> cluster = new HashSet<>();
-        if (town == null || start == null) return cluster;
-        if (!town.ownsChunk(start)) return cluster;
-        Set<ChunkPos> claims = new HashSet<>(town.getClaims());
-        Deque<ChunkPos> stack = new ArrayDeque<>();
-        stack.push(start);
-        while (!stack.isEmpty()) {
-            ChunkPos cur = stack.pop();
-            if (!cluster.add(cur)) continue;
-            int x = cur.getX();
-            int z = cur.getZ();
-            String world = cur.getWorld();
-            int[][] dirs = { {1,0}, {-1,0}, {0,1}, {0,-1} };
-            for (int[] d : dirs) {
-                ChunkPos neighbor = new ChunkPos(world, x + d[0], z + d[1]);
-                if (claims.contains(neighbor) && !cluster.contains(neighbor)) {
-                    stack.push(neighbor);
-                }
-            }
-        }
-        return cluster;
+        if (town == null || start == null) return new HashSet<>();
+        if (!town.ownsChunk(start)) return new HashSet<>();
+        return town.getClusters().cluster(start);
     }
 
     public RemovalResult trimSmallestOutposts(UUID owner, int clustersToRemove) {
@@ -890,11 +903,9 @@ public class TownManager {
         saveTown(challenger);
         notifyDebtCrossing(challenger, availableBefore, availableAfter);
         saveContests();
-        for (ChunkPos pos : cluster) {
-            updateChunkMarker(defender, pos);
-            recordHistory(pos, "CONTEST-START", defender);
-        }
-        refreshLeaderboardScoreboard();
+        for (ChunkPos pos : cluster) recordHistory(pos, "CONTEST-START", defender);
+        updateChunkMarkers(cluster);
+        markLeaderboardDirty(LB_CONTESTS);
         updateContestBossBar();
         return true;
     }
@@ -923,27 +934,47 @@ public class TownManager {
         }
         for (ChunkPos pos : cluster) {
             to.addClaim(pos);
-            townsByChunkId.put(pos.id(), to);
-            updateChunkMarker(to, pos);
+            indexClaim(pos, to);
+            journal.transfer(from, to, pos);
             recordHistory(pos, "TRANSFER", to);
         }
-        saveTown(from);
-        saveTown(to);
+        updateChunkMarkers(cluster);
         if (removedCapital) refreshTownAreas(from);
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_CLAIMS | LB_CONTESTS);
         return true;
     }
 
     public int getPlaytimeHours(UUID owner) {
-        OfflinePlayer op = Bukkit.getOfflinePlayer(owner);
-        int ticks = 0;
-        try {
-            ticks = op.getStatistic(Statistic.PLAY_ONE_MINUTE);
-        } catch (IllegalArgumentException ignored) {
-            // Offline player without data; leave at zero.
+        return playtime.getHours(owner);
+    }
+
+    public void refreshPlaytime(Player p) {
+        if (p != null) playtime.update(p);
+    }
+
+    public void startPlaytimeTracking() {
+        playtime.start();
+    }
+
+    public void stopPlaytimeTracking() {
+        playtime.stop();
+    }
+
+    public void startStorage() {
+        townWriter.start();
+        history.start();
+        if (statsTask != null) statsTask.cancel();
+        statsTask = Bukkit.getScheduler().runTaskTimer(plugin, this::saveStats, STATS_FLUSH_INTERVAL_TICKS, STATS_FLUSH_INTERVAL_TICKS);
+    }
+
+    // Call after saveAll(); waits for queued town, stats and history writes and stops the I/O threads.
+    public void shutdownStorage() {
+        if (statsTask != null) {
+            statsTask.cancel();
+            statsTask = null;
         }
-        long totalSeconds = (long) ticks / 20L;
-        return (int) (totalSeconds / 3600L);
+        townWriter.shutdown();
+        history.shutdown();
     }
 
     public boolean adjustBonus(UUID owner, int delta) {
@@ -962,34 +993,34 @@ public class TownManager {
             t.addKill();
             saveTown(t);
         }
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_KILLS | LB_STATS);
     }
 
     public void recordDeath(UUID victim) {
         recordPlayerDeath(victim);
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_STATS);
     }
 
     public void recordPlayerKill(UUID player) {
-        PlayerStats stats = playerStats.computeIfAbsent(player.toString(), k -> new PlayerStats());
+        PlayerStats stats = playerStats.computeIfAbsent(player, k -> new PlayerStats());
         stats.kills++;
-        saveStats();
+        statsDirty = true;
     }
 
     public void recordPlayerDeath(UUID player) {
-        PlayerStats stats = playerStats.computeIfAbsent(player.toString(), k -> new PlayerStats());
+        PlayerStats stats = playerStats.computeIfAbsent(player, k -> new PlayerStats());
         stats.deaths++;
-        saveStats();
+        statsDirty = true;
     }
 
     public void recordPlayerClaim(UUID player) {
-        PlayerStats stats = playerStats.computeIfAbsent(player.toString(), k -> new PlayerStats());
+        PlayerStats stats = playerStats.computeIfAbsent(player, k -> new PlayerStats());
         stats.claims++;
-        saveStats();
+        statsDirty = true;
     }
 
     public PlayerStats getPlayerStats(UUID player) {
-        return playerStats.getOrDefault(player.toString(), new PlayerStats());
+        return playerStats.getOrDefault(player, new PlayerStats());
     }
 
     public boolean toggleSilentVisit(UUID player) {
@@ -1038,83 +1069,71 @@ public class TownManager {
             for (UUID m : t.getMembers()) townsByMember.put(m, t);
         }
         if (t.getClaims() != null) {
-            for (ChunkPos pos : t.getClaims()) townsByChunkId.put(pos.id(), t);
+            for (ChunkPos pos : t.getClaims()) indexClaim(pos, t);
         }
     }
 
+    // Queues the town for the write-behind writer; the file is written within a second.
     public void saveTown(Town t) {
-        try {
-            File out = new File(townsDir, t.getOwner().toString() + ".json");
-            try (FileWriter w = new FileWriter(out)) {
-                gson.toJson(t, w);
-            }
-        } catch (Exception ex) {
-            plugin.getLogger().severe("Failed to save town " + t.getName() + ": " + ex.getMessage());
-        }
+        townWriter.markDirty(t);
     }
 
     public void saveAll() {
         for (Town t : townsByOwner.values()) saveTown(t);
-        saveHistory();
+        townWriter.compact();
         saveStats();
+        townWriter.flush();
+        saveHistory();
         saveSilentVisitors();
         saveContests();
         saveContestImmunity();
     }
 
     public void loadAll() {
+        saveStats();
+        townWriter.flush();
         loadScoreboardSettings();
+        claimBudgets.clear();
         townsByOwner.clear();
-        townsByChunkId.clear();
+        claimIndex.clear();
         townsByMember.clear();
         pendingInvites.clear();
         pendingAllianceInvites.clear();
         pendingContestConfirmations.clear();
         pendingRpsByContest.clear();
-        File[] files = townsDir.listFiles((d, name) -> name.endsWith(".json"));
-        if (files != null) {
-            for (File f : files) {
-                try (FileReader r = new FileReader(f)) {
-                    Town t = gson.fromJson(r, Town.class);
-                    if (t != null && t.getOwner() != null) {
-                        boolean changed = false;
-                        if (t.getCreatedAt() <= 0L) {
-                            t.setCreatedAt(System.currentTimeMillis() - MIN_TOWN_AGE_MS);
-                            changed = true;
-                        }
-                        if (!t.isReputationInitialized()) {
-                            t.setReputation(Town.MAX_REPUTATION);
-                            t.setReputationInitialized(true);
-                            changed = true;
-                        } else if (t.getReputation() > Town.MAX_REPUTATION) {
-                            t.setReputation(Town.MAX_REPUTATION);
-                            changed = true;
-                        } else if (t.getReputation() < Town.MIN_REPUTATION) {
-                            t.setReputation(Town.MIN_REPUTATION);
-                            changed = true;
-                        }
-                        if (t.getClaims() != null && !t.getClaims().isEmpty()) {
-                            int before = t.getCapitalClaims().size();
-                            t.getCapitalClaims().removeIf(pos -> !t.getClaims().contains(pos));
-                            if (before != t.getCapitalClaims().size()) {
-                                changed = true;
-                            }
-                        } else if (!t.getCapitalClaims().isEmpty()) {
-                            t.getCapitalClaims().clear();
-                            changed = true;
-                        }
-                        if (changed) {
-                            saveTown(t);
-                        }
-                        townsByOwner.put(t.getOwner(), t);
-                        indexTown(t);
-                    }
-                } catch (Exception ex) {
-                    plugin.getLogger().warning("Failed to load town file " + f.getName() + ": " + ex.getMessage());
-                }
-            }
+        townWriter.useStore(openStore(plugin.getSettings().storageBackend()));
+        long phaseStart = System.nanoTime();
+        Set<UUID> rewrite = new HashSet<>();
+        List<Town> loaded;
+        try {
+            loaded = townWriter.store().loadAll(rewrite);
+        } catch (IOException ex) {
+            plugin.getLogger().severe("Failed to load towns from " + townWriter.store().describe() + ": " + ex.getMessage());
+            loaded = Collections.emptyList();
+        }
+        long loadNanos = System.nanoTime() - phaseStart;
+
+        phaseStart = System.nanoTime();
+        for (Town t : loaded) {
+            if (rewrite.contains(t.getOwner())) saveTown(t);
+            townsByOwner.put(t.getOwner(), t);
+        }
+        int journalRecords = journal.replay(townsByOwner);
+        long replayNanos = System.nanoTime() - phaseStart;
+
+        phaseStart = System.nanoTime();
+        for (Town t : townsByOwner.values()) indexTown(t);
+        long indexNanos = System.nanoTime() - phaseStart;
+        plugin.getLogger().info("Loaded " + townsByOwner.size() + " towns from " + townWriter.store().describe() + ": load " + loadNanos / 1_000_000L + " ms, journal replay "
+                + replayNanos / 1_000_000L + " ms (" + journalRecords + " records), index " + indexNanos / 1_000_000L + " ms.");
+        if (journalRecords > 0) townWriter.compact();
+        if (plugin.getSettings().usePlaytimeScaling()) {
+            playtime.refreshOnline();
+            playtime.loadAsync(townsByOwner.keySet());
         }
         loadHistory();
+        // queued before any history lookup or record, so those read the bootstrapped regions
+        bootstrapHistoryForExistingClaims();
         loadStats();
         loadSilentVisitors();
         loadContests();
@@ -1123,54 +1142,199 @@ public class TownManager {
         rebuildContestIndex();
         processExpiredContests();
         refreshAllTownAreas();
-        bootstrapHistoryForExistingClaims();
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_ALL);
         updateContestBossBar();
     }
 
     public void reloadAll() {
-        plugin.reloadConfig();
+        plugin.reloadSettings();
         loadAll();
     }
 
-    private void loadHistory() {
-        chunkHistory.clear();
-        if (!historyFile.exists()) return;
-        try (FileReader reader = new FileReader(historyFile)) {
-            Type type = new TypeToken<Map<String, List<ChunkHistoryEntry>>>(){}.getType();
-            Map<String, List<ChunkHistoryEntry>> data = gson.fromJson(reader, type);
-            if (data != null) chunkHistory.putAll(data);
-        } catch (Exception ex) {
-            plugin.getLogger().warning("Failed to load history: " + ex.getMessage());
+    // Replaces the other backend's contents with every live town and the stats/contest documents on the writer's
+    // I/O thread, then with the chunk history on the history thread, and switches to it once both copies succeeded.
+    // The reply runs on the main thread.
+    public void migrateStorage(String backend, Consumer<String> reply) {
+        migrating = true;
+        townWriter.compact();
+        // name -> document JSON
+        Map<String, String> documents = new LinkedHashMap<>();
+        documents.put(STATS_DOC, gson.toJson(playerStats));
+        documents.put(CONTESTS_DOC, gson.toJson(new ArrayList<>(contestsById.values())));
+        documents.put(CONTEST_IMMUNITY_DOC, gson.toJson(contestImmunityByChunkId));
+        List<byte[]> snapshots = new ArrayList<>(townsByOwner.size());
+        for (Town t : townsByOwner.values()) {
+            t.setJournalSeq(journal.lastSeq());
+            try {
+                snapshots.add(TownBinaryCodec.encode(t));
+            } catch (IOException ex) {
+                plugin.getLogger().severe("Failed to serialize town " + t.getName() + ": " + ex.getMessage());
+            }
+        }
+        townWriter.runIo(() -> {
+            String result;
+            TownStore target = null;
+            try {
+                target = "sqlite".equals(backend)
+                        ? new SqliteTownStore(new File(plugin.getDataFolder(), "towns.db"))
+                        : new FileTownStore(plugin, townsDir, gson, plugin.getSettings().storageFormat());
+                List<Town> copies = new ArrayList<>(snapshots.size());
+                for (byte[] data : snapshots) copies.add(TownBinaryCodec.decode(new ByteArrayInputStream(data)));
+                // replaces whatever the target held, so towns deleted since an earlier migration do not come back
+                target.replaceAll(copies);
+                for (Map.Entry<String, String> e : documents.entrySet()) target.saveDocument(e.getKey(), e.getValue());
+                result = "§aMigrated §f" + snapshots.size() + " §atowns to " + target.describe() + "§a.";
+            } catch (IOException ex) {
+                plugin.getLogger().severe("Town migration failed: " + ex.getMessage());
+                result = "§cMigration failed: " + ex.getMessage();
+                if (target != null) target.close();
+                target = null;
+            }
+            String message = result;
+            TownStore opened = target;
+            if (!plugin.isEnabled()) {
+                if (opened != null) opened.close();
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (opened == null) {
+                    migrating = false;
+                    reply.accept(message);
+                    return;
+                }
+                history.migrateTo(() -> newHistoryBackend(backend), chunks -> {
+                    migrating = false;
+                    if (chunks < 0) {
+                        townWriter.runIo(opened::close);
+                        reply.accept(message + " §cCopying chunk history failed, so storage was not switched; see the console.");
+                        return;
+                    }
+                    switchStore(backend, opened);
+                    reply.accept(message + " §aCopied history for §f" + chunks + " §achunks. §aNow storing everything in " + opened.describe() + ".");
+                });
+            });
+        });
+    }
+
+    // Makes the migrated store live. Changes made while the copy ran only reached the old store (and compaction
+    // may have truncated their journal records), so every town and document is saved to the new one again.
+    private void switchStore(String backend, TownStore target) {
+        townWriter.useStore(target);
+        for (Town t : townsByOwner.values()) saveTown(t);
+        townWriter.flushDirty();
+        statsDirty = true;
+        saveStats();
+        saveContests();
+        saveContestImmunity();
+        plugin.setStorageBackend(backend);
+    }
+
+    public boolean isMigrating() {
+        return migrating;
+    }
+
+    // The backend towns are read from and written to right now; differs from the config when sqlite failed to open.
+    public String liveStorageBackend() {
+        return townWriter.store() instanceof SqliteTownStore ? "sqlite" : "files";
+    }
+
+    // Falls back to the town files when the database cannot be opened, so the server still starts.
+    private TownStore openStore(String backend) {
+        if ("sqlite".equals(backend)) {
+            try {
+                return new SqliteTownStore(new File(plugin.getDataFolder(), "towns.db"));
+            } catch (IOException ex) {
+                plugin.getLogger().severe(ex.getMessage() + "; using town files instead.");
+            }
+        }
+        return new FileTownStore(plugin, townsDir, gson, plugin.getSettings().storageFormat());
+    }
+
+    // Same fallback as openStore: history stays in region files when the database cannot be opened.
+    private HistoryBackend openHistory(String backend) {
+        try {
+            return newHistoryBackend(backend);
+        } catch (IOException ex) {
+            plugin.getLogger().severe(ex.getMessage() + "; keeping chunk history in region files instead.");
+            return new FileHistoryBackend(new File(plugin.getDataFolder(), "history"));
+        }
+    }
+
+    private HistoryBackend newHistoryBackend(String backend) throws IOException {
+        return "sqlite".equals(backend)
+                ? new SqliteHistoryBackend(new File(plugin.getDataFolder(), "towns.db"))
+                : new FileHistoryBackend(new File(plugin.getDataFolder(), "history"));
+    }
+
+    // Fixes fields older versions left unset or out of range; returns whether the town changed. Called by the
+    // stores' loadAll on their loader threads, touching only the town just read.
+    static boolean normalizeLoadedTown(Town t) {
+        boolean changed = false;
+        if (t.getCreatedAt() <= 0L) {
+            t.setCreatedAt(System.currentTimeMillis() - MIN_TOWN_AGE_MS);
+            changed = true;
+        }
+        if (!t.isReputationInitialized()) {
+            t.setReputation(Town.MAX_REPUTATION);
+            t.setReputationInitialized(true);
+            changed = true;
+        } else if (t.getReputation() > Town.MAX_REPUTATION) {
+            t.setReputation(Town.MAX_REPUTATION);
+            changed = true;
+        } else if (t.getReputation() < Town.MIN_REPUTATION) {
+            t.setReputation(Town.MIN_REPUTATION);
+            changed = true;
+        }
+        if (t.getClaims() != null && !t.getClaims().isEmpty()) {
+            int before = t.getCapitalClaims().size();
+            t.getCapitalClaims().removeIf(pos -> !t.getClaims().contains(pos));
+            if (before != t.getCapitalClaims().size()) {
+                changed = true;
+            }
+        } else if (!t.getCapitalClaims().isEmpty()) {
+            t.getCapitalClaims().clear();
+            changed = true;
         }
+        return changed;
+    }
+
+    private void loadHistory() {
+        history.load(plugin.getSettings().historyCacheRegions(), openHistory(plugin.getSettings().storageBackend()));
     }
 
     public void saveHistory() {
-        try (FileWriter writer = new FileWriter(historyFile)) {
-            gson.toJson(chunkHistory, writer);
-        } catch (Exception ex) {
-            plugin.getLogger().warning("Failed to save history: " + ex.getMessage());
+        history.saveDirty();
+        history.flush();
+    }
+
+    // Reads a document from the town store at load time; null when it is missing or unreadable.
+    private String loadDocument(String name, String what) {
+        try {
+            return townWriter.store().loadDocument(name);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("Failed to load " + what + ": " + ex.getMessage());
+            return null;
         }
     }
 
     private void loadStats() {
         playerStats.clear();
-        if (!statsFile.exists()) return;
-        try (FileReader reader = new FileReader(statsFile)) {
-            Type type = new TypeToken<Map<String, PlayerStats>>(){}.getType();
-            Map<String, PlayerStats> data = gson.fromJson(reader, type);
+        String json = loadDocument(STATS_DOC, "player stats");
+        if (json == null) return;
+        try {
+            Type type = new TypeToken<Map<UUID, PlayerStats>>(){}.getType();
+            Map<UUID, PlayerStats> data = gson.fromJson(json, type);
             if (data != null) playerStats.putAll(data);
         } catch (Exception ex) {
             plugin.getLogger().warning("Failed to load player stats: " + ex.getMessage());
         }
     }
 
+    // Stats change on every kill, death and claim; they are serialized at most once per flush interval.
     public void saveStats() {
-        try (FileWriter writer = new FileWriter(statsFile)) {
-            gson.toJson(playerStats, writer);
-        } catch (Exception ex) {
-            plugin.getLogger().warning("Failed to save player stats: " + ex.getMessage());
-        }
+        if (!statsDirty) return;
+        statsDirty = false;
+        townWriter.saveDocument(STATS_DOC, gson.toJson(playerStats), "player stats");
     }
 
     private void loadSilentVisitors() {
@@ -1196,11 +1360,12 @@ public class TownManager {
     private void loadContests() {
         contestsById.clear();
         contestsByChunkId.clear();
-        if (!contestsFile.exists()) return;
+        String json = loadDocument(CONTESTS_DOC, "contests");
+        if (json == null) return;
         long now = System.currentTimeMillis();
-        try (FileReader reader = new FileReader(contestsFile)) {
+        try {
             Type type = new TypeToken<List<ContestState>>(){}.getType();
-            List<ContestState> data = gson.fromJson(reader, type);
+            List<ContestState> data = gson.fromJson(json, type);
             if (data != null) {
                 for (ContestState contest : data) {
                     if (contest.getDefenderOwner() == null || contest.getChallengerOwner() == null) continue;
@@ -1235,19 +1400,16 @@ public class TownManager {
     }
 
     private void saveContests() {
-        try (FileWriter writer = new FileWriter(contestsFile)) {
-            gson.toJson(new ArrayList<>(contestsById.values()), writer);
-        } catch (Exception ex) {
-            plugin.getLogger().warning("Failed to save contests: " + ex.getMessage());
-        }
+        townWriter.saveDocument(CONTESTS_DOC, gson.toJson(new ArrayList<>(contestsById.values())), "contests");
     }
 
     private void loadContestImmunity() {
         contestImmunityByChunkId.clear();
-        if (!contestImmunityFile.exists()) return;
-        try (FileReader reader = new FileReader(contestImmunityFile)) {
+        String json = loadDocument(CONTEST_IMMUNITY_DOC, "contest immunity");
+        if (json == null) return;
+        try {
             Type type = new TypeToken<Map<String, Long>>(){}.getType();
-            Map<String, Long> data = gson.fromJson(reader, type);
+            Map<String, Long> data = gson.fromJson(json, type);
             if (data != null) contestImmunityByChunkId.putAll(data);
         } catch (Exception ex) {
             plugin.getLogger().warning("Failed to load contest immunity: " + ex.getMessage());
@@ -1255,11 +1417,7 @@ public class TownManager {
     }
 
     private void saveContestImmunity() {
-        try (FileWriter writer = new FileWriter(contestImmunityFile)) {
-            gson.toJson(contestImmunityByChunkId, writer);
-        } catch (Exception ex) {
-            plugin.getLogger().warning("Failed to save contest immunity: " + ex.getMessage());
-        }
+        townWriter.saveDocument(CONTEST_IMMUNITY_DOC, gson.toJson(contestImmunityByChunkId), "contest immunity");
     }
 
     private void pruneExpiredContestImmunity() {
@@ -1533,10 +1691,10 @@ public class TownManager {
         if (resolution == ContestResolution.CANCEL) {
             if (defender != null) {
                 for (ChunkPos pos : contest.getChunks()) {
-                    updateChunkMarker(defender, pos);
                     recordHistory(pos, "CONTEST-CANCEL", defender);
                     contestImmunityByChunkId.put(pos.id(), System.currentTimeMillis() + CONTEST_IMMUNITY_MS);
                 }
+                updateChunkMarkers(contest.getChunks());
                 saveTown(defender);
                 saveContestImmunity();
             }
@@ -1549,10 +1707,10 @@ public class TownManager {
         if (resolution == ContestResolution.EXPIRE || winnerOwner == null) {
             if (defender != null) {
                 for (ChunkPos pos : contest.getChunks()) {
-                    updateChunkMarker(defender, pos);
                     recordHistory(pos, "CONTEST-EXPIRE", defender);
                     contestImmunityByChunkId.put(pos.id(), System.currentTimeMillis() + CONTEST_IMMUNITY_MS);
                 }
+                updateChunkMarkers(contest.getChunks());
                 saveTown(defender);
                 saveContestImmunity();
             }
@@ -1565,9 +1723,10 @@ public class TownManager {
         Town winner = townsByOwner.get(winnerOwner);
         if (winner == null) {
             if (defender != null) {
-                for (ChunkPos pos : contest.getChunks()) updateChunkMarker(defender, pos);
+                updateChunkMarkers(contest.getChunks());
             }
             saveContests();
+            markLeaderboardDirty(LB_CONTESTS);
             updateContestBossBar();
             return;
         }
@@ -1579,14 +1738,15 @@ public class TownManager {
                     defender.removeClaim(pos);
                 }
                 defender.getCapitalClaims().removeAll(contest.getChunks());
-                saveTown(defender);
             }
             for (ChunkPos pos : contest.getChunks()) {
                 winner.addClaim(pos);
-                townsByChunkId.put(pos.id(), winner);
-                updateChunkMarker(winner, pos);
+                indexClaim(pos, winner);
+                if (defender != null) journal.transfer(defender, winner, pos);
+                else journal.claim(winner, pos);
                 recordHistory(pos, resolution == ContestResolution.HOLD ? "CONTEST-HOLD" : "CONTEST-WIN", winner);
             }
+            updateChunkMarkers(contest.getChunks());
             if (resolution == ContestResolution.HOLD && challenger != null) {
                 int availableBefore = computeAvailableClaims(challenger.getOwner());
                 int extraCost = Math.max(1, contest.getStartCost());
@@ -1599,12 +1759,9 @@ public class TownManager {
                     challengerPlayer.sendMessage("§cHolding the outpost cost an extra §e" + extraCost + "§c claims.");
                 }
             }
-            saveTown(winner);
         } else if (defender != null) {
-            for (ChunkPos pos : contest.getChunks()) {
-                updateChunkMarker(defender, pos);
-                recordHistory(pos, "CONTEST-DEFENDED", defender);
-            }
+            for (ChunkPos pos : contest.getChunks()) recordHistory(pos, "CONTEST-DEFENDED", defender);
+            updateChunkMarkers(contest.getChunks());
             saveTown(defender);
         }
 
@@ -1625,23 +1782,31 @@ public class TownManager {
         updateContestBossBar();
     }
 
-    private void updateChunkMarker(Town owner, ChunkPos pos) {
-        if (dynmap == null || pos == null) return;
+    private void updateChunkMarker(ChunkPos pos) {
+        if (pos == null) return;
+        updateChunkMarkers(Collections.singletonList(pos));
+    }
+
+    // One delta for a batch, so a cluster is redrawn once rather than once per chunk.
+    private void updateChunkMarkers(Collection<ChunkPos> chunks) {
+        if (chunks == null || chunks.isEmpty()) return;
+        for (MapRenderer r : renderers) r.claimsChanged(chunks);
+    }
+
+    // Label and colour of a chunk's map area from the claim index; null when the chunk is unclaimed.
+    public MapRenderer.MarkerStyle markerStyle(ChunkPos pos) {
+        Town owner = getOwnerAt(pos.getWorld(), pos.getX(), pos.getZ());
+        if (owner == null) return null;
         ContestState contest = contestsByChunkId.get(pos.id());
-        if (contest != null) {
-            String label = buildContestLabelPlain(contest);
-            dynmap.addOrUpdateChunkArea(label, VanillaColor.GRAY.rgb, pos);
-        } else if (owner != null) {
-            if (owner.isCapitalChunk(pos)) {
-                VanillaColor color = owner.getColor();
-                int rgb = color != null ? color.rgb : VanillaColor.GREEN.rgb;
-                dynmap.addOrUpdateChunkArea(capitalLabelPlain(owner), rgb, pos);
-            } else {
-                dynmap.addOrUpdateChunkArea(owner, pos);
-            }
-        } else {
-            dynmap.removeAreaMarker(pos);
-        }
+        if (contest != null) return new MapRenderer.MarkerStyle(buildContestLabelPlain(contest), VanillaColor.GRAY.rgb);
+        MapRenderer.MarkerStyle base = townStyle(owner);
+        return owner.isCapitalChunk(pos) ? new MapRenderer.MarkerStyle(capitalLabelPlain(owner), base.rgb()) : base;
+    }
+
+    // Town name and colour, without capital or contest overrides (map overview layers).
+    public MapRenderer.MarkerStyle townStyle(Town town) {
+        VanillaColor color = town.getColor();
+        return new MapRenderer.MarkerStyle(town.getName(), color != null ? color.rgb : VanillaColor.GREEN.rgb);
     }
 
     private String buildContestLabelPlain(ContestState contest) {
@@ -1687,32 +1852,32 @@ public class TownManager {
     }
 
     public void refreshTownAreas(Town t) {
-        if (t == null || dynmap == null) return;
-        for (ChunkPos pos : t.getClaims()) {
-            updateChunkMarker(t, pos);
-        }
+        if (t == null) return;
+        updateChunkMarkers(t.getClaims());
     }
 
     public void refreshAllTownAreas() {
-        if (dynmap == null) return;
-        for (Town t : townsByOwner.values()) {
-            refreshTownAreas(t);
-        }
+        for (MapRenderer r : renderers) r.refreshAll(townsByOwner.values());
+    }
+
+    // The callback runs on the main thread once the chunk's history region is loaded.
+    public void getHistoryFor(ChunkPos pos, Consumer<List<ChunkHistoryEntry>> callback) {
+        history.get(pos, callback);
     }
 
-    public List<ChunkHistoryEntry> getHistoryFor(ChunkPos pos) {
-        return chunkHistory.getOrDefault(pos.id(), Collections.emptyList());
+    // Loads the history regions next to the chunk ahead of a player walking into them.
+    public void prefetchHistoryAround(ChunkPos pos) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (dx != 0 || dz != 0) history.prefetch(new ChunkPos(pos.getWorld(), pos.getX() + dx, pos.getZ() + dz));
+            }
+        }
     }
 
     private void recordHistory(ChunkPos pos, String action, Town t) {
-        List<ChunkHistoryEntry> list = chunkHistory.computeIfAbsent(pos.id(), k -> new ArrayList<>());
         List<String> allies = t == null ? Collections.emptyList() : resolveColoredNames(t.getAllies());
         List<String> wars = t == null ? Collections.emptyList() : resolveColoredNames(t.getWars());
-        list.add(0, new ChunkHistoryEntry(System.currentTimeMillis(), action, t == null ? "Unclaimed" : t.getName(), t == null ? null : t.getOwner(), allies, wars));
-        if (list.size() > HISTORY_LIMIT) {
-            while (list.size() > HISTORY_LIMIT) list.remove(list.size() - 1);
-        }
-        saveHistory();
+        history.record(pos, new ChunkHistoryEntry(System.currentTimeMillis(), action, t == null ? "Unclaimed" : t.getName(), t == null ? null : t.getOwner(), allies, wars));
     }
 
     public Collection<Town> allTowns() { return townsByOwner.values(); }
@@ -1926,9 +2091,8 @@ public class TownManager {
             default -> next = ScoreboardMode.OFF;
         }
         scoreboardModes.put(player, next);
-        if (next == ScoreboardMode.OFF) {
-            leaderboardBoards.remove(player);
-        }
+        // the new mode shows different sections; a fresh board makes the next pass draw them
+        leaderboardBoards.remove(player);
         refreshLeaderboardScoreboard();
         Player p = Bukkit.getPlayer(player);
         if (p != null) applyScoreboard(p);
@@ -1941,8 +2105,8 @@ public class TownManager {
         boolean inContest = isContestParticipant(id);
         if (getScoreboardMode(id) != ScoreboardMode.OFF || inContest) {
             if (mgr != null && !leaderboardBoards.containsKey(id)) refreshLeaderboardScoreboard();
-            Scoreboard lb = leaderboardBoards.get(id);
-            if (lb != null) { p.setScoreboard(lb); return; }
+            SidebarBoard lb = leaderboardBoards.get(id);
+            if (lb != null) { p.setScoreboard(lb.scoreboard()); return; }
         }
         if (mgr != null) {
             p.setScoreboard(mgr.getMainScoreboard());
@@ -1980,98 +2144,140 @@ public class TownManager {
         warmodeBossBar.removePlayer(player);
     }
 
+    // Collects refresh reasons; the first one schedules a single pass after scoreboard.refresh-interval-ticks,
+    // so a burst of changes (an autoclaim flight, a fight) costs one pass.
+    public void markLeaderboardDirty(int reasons) {
+        leaderboardDirty |= reasons;
+        if (leaderboardTask == null) {
+            leaderboardTask = Bukkit.getScheduler().runTaskLater(plugin, this::refreshLeaderboardScoreboard, scoreboardRefreshTicks);
+        }
+    }
+
+    // Runs the pending pass now: rebuilds the dirty shared sections and redraws the viewers showing them.
+    // Viewers without a board yet are always drawn.
     public void refreshLeaderboardScoreboard() {
+        if (leaderboardTask != null) {
+            leaderboardTask.cancel();
+            leaderboardTask = null;
+        }
+        int reasons = leaderboardDirty;
+        leaderboardDirty = 0;
         ScoreboardManager mgr = Bukkit.getScoreboardManager();
         if (mgr == null) return;
         leaderboardBoards.keySet().removeIf(uuid -> Bukkit.getPlayer(uuid) == null);
 
-        List<Town> killsTop = topByKills(3);
-        List<Town> claimsTop = topByClaims(3);
-        List<String> alliances = buildAllianceGroupLines();
+        if ((reasons & LB_KILLS) != 0) killsTop = topByKills(3);
+        if ((reasons & LB_CLAIMS) != 0) claimsTop = topByClaims(3);
+        if ((reasons & LB_ALLIANCES) != 0) allianceLines = buildAllianceGroupLines();
 
-        for (Player online : Bukkit.getOnlinePlayers()) {
+        // a timer-only pass changes nothing outside the contesting towns, so it visits just their online players
+        Collection<? extends Player> viewers = (reasons & ~LB_CONTEST_TIMER) == 0 ? onlineContestParticipants() : Bukkit.getOnlinePlayers();
+        for (Player online : viewers) {
             UUID viewer = online.getUniqueId();
             ScoreboardMode mode = getScoreboardMode(viewer);
+            SidebarBoard board = leaderboardBoards.get(viewer);
             boolean inContest = isContestParticipant(viewer);
+            // contest start/end can show or hide anyone's board, so it visits every viewer
+            int shown = LB_CONTESTS | sectionsShown(mode) | (inContest ? LB_CONTEST_TIMER : 0);
+            if (board != null && (reasons & shown) == 0) continue;
             boolean shouldShow = mode != ScoreboardMode.OFF || inContest;
             if (!shouldShow) {
                 leaderboardBoards.remove(viewer);
-                online.setScoreboard(mgr.getMainScoreboard());
+                if (online.getScoreboard() != mgr.getMainScoreboard()) online.setScoreboard(mgr.getMainScoreboard());
                 continue;
             }
             List<String> contests = inContest ? buildContestLinesForPlayer(viewer) : Collections.emptyList();
-            Scoreboard board = buildLeaderboardBoard(mgr, viewer, killsTop, claimsTop, alliances, contests, mode);
-            leaderboardBoards.put(viewer, board);
-            online.setScoreboard(board);
+            if (board == null) {
+                board = new SidebarBoard(mgr, scoreboardTitle);
+                leaderboardBoards.put(viewer, board);
+            }
+            board.update(scoreboardTitle, buildLeaderboardLines(viewer, killsTop, claimsTop, allianceLines, contests, mode));
+            if (online.getScoreboard() != board.scoreboard()) online.setScoreboard(board.scoreboard());
+        }
+    }
+
+    // Online owners and members of towns in an active contest.
+    private List<Player> onlineContestParticipants() {
+        Set<UUID> owners = new HashSet<>();
+        for (ContestState contest : contestsById.values()) {
+            owners.add(contest.getDefenderOwner());
+            owners.add(contest.getChallengerOwner());
+        }
+        List<Player> out = new ArrayList<>();
+        for (UUID owner : owners) {
+            Town town = townsByOwner.get(owner);
+            if (town == null) continue;
+            Player p = Bukkit.getPlayer(owner);
+            if (p != null) out.add(p);
+            for (UUID member : town.getMembers()) {
+                p = Bukkit.getPlayer(member);
+                if (p != null) out.add(p);
+            }
         }
+        return out;
     }
 
-    private Scoreboard buildLeaderboardBoard(ScoreboardManager mgr, UUID viewer, List<Town> killsTop, List<Town> claimsTop, List<String> alliances, List<String> contests, ScoreboardMode mode) {
-        Scoreboard board = mgr.getNewScoreboard();
-        Objective obj = board.registerNewObjective("vc_leaders", "dummy", scoreboardTitle);
-        obj.setDisplaySlot(DisplaySlot.SIDEBAR);
+    // Reasons that change what a viewer in this mode sees (the personal lines show kills, deaths and claims).
+    private static int sectionsShown(ScoreboardMode mode) {
+        return switch (mode) {
+            case LEADERBOARD -> LB_KILLS | LB_CLAIMS | LB_STATS;
+            case ALLIANCES -> LB_ALLIANCES | LB_CLAIMS | LB_STATS;
+            default -> 0;
+        };
+    }
 
-        int score = 15;
-        int unique = 0;
-        final int TIP_SCORE = 1;
+    // Sidebar lines top to bottom; the hide tip is always the last line.
+    private List<String> buildLeaderboardLines(UUID viewer, List<Town> killsTop, List<Town> claimsTop, List<String> alliances, List<String> contests, ScoreboardMode mode) {
+        List<String> lines = new ArrayList<>();
         boolean hasContests = contests != null && !contests.isEmpty();
 
         if (hasContests) {
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardContestedTitle, unique++)).setScore(score--);
-            for (String line : contests) {
-                if (score <= TIP_SCORE) break;
-                obj.getScore(uniqueLine(line, unique++)).setScore(score--);
-            }
+            lines.add(scoreboardContestedTitle);
+            lines.addAll(contests);
         } else if (mode == ScoreboardMode.ALLIANCES) {
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardAlliancesTitle, unique++)).setScore(score--);
+            lines.add(scoreboardAlliancesTitle);
             if (alliances == null || alliances.isEmpty()) {
-                if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardNoneLine, unique++)).setScore(score--);
+                lines.add(scoreboardNoneLine);
             } else {
                 int idx = 1;
                 for (String line : alliances) {
-                    if (score <= TIP_SCORE) break;
-                    String formatted = formatTemplate(
+                    lines.add(formatTemplate(
                             scoreboardAllianceEntryFormat,
                             "index", String.valueOf(idx),
                             "alliance", line
-                    );
-                    obj.getScore(uniqueLine(formatted, unique++)).setScore(score--);
+                    ));
                     idx++;
                 }
             }
         } else {
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardTopKillsTitle, unique++)).setScore(score--);
+            lines.add(scoreboardTopKillsTitle);
             if (killsTop.isEmpty()) {
-                if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardNoneLine, unique++)).setScore(score--);
+                lines.add(scoreboardNoneLine);
             } else {
                 int idx = 1;
                 for (Town t : killsTop) {
-                    if (score <= TIP_SCORE) break;
-                    String line = formatTemplate(
+                    lines.add(formatTemplate(
                             scoreboardTopEntryFormat,
                             "index", String.valueOf(idx),
                             "town", coloredTownNameWithReputation(t),
                             "value", String.valueOf(t.getKills())
-                    );
-                    obj.getScore(uniqueLine(line, unique++)).setScore(score--);
+                    ));
                     idx++;
                 }
             }
 
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardTopClaimsTitle, unique++)).setScore(score--);
+            lines.add(scoreboardTopClaimsTitle);
             if (claimsTop.isEmpty()) {
-                if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardNoneLine, unique++)).setScore(score--);
+                lines.add(scoreboardNoneLine);
             } else {
                 int idx = 1;
                 for (Town t : claimsTop) {
-                    if (score <= TIP_SCORE) break;
-                    String line = formatTemplate(
+                    lines.add(formatTemplate(
                             scoreboardTopEntryFormat,
                             "index", String.valueOf(idx),
                             "town", coloredTownNameWithReputation(t),
                             "value", String.valueOf(t.claimCount())
-                    );
-                    obj.getScore(uniqueLine(line, unique++)).setScore(score--);
+                    ));
                     idx++;
                 }
             }
@@ -2088,34 +2294,22 @@ public class TownManager {
                         }
                         return stats.getClaims();
                     });
-            obj.getScore(uniqueLine(scoreboardSeparatorLine, unique++)).setScore(score--);
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(scoreboardYouTitle, unique++)).setScore(score--);
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(playerStatLine(scoreboardYouKillsFormat, stats.getKills()), unique++)).setScore(score--);
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(playerStatLine(scoreboardYouDeathsFormat, stats.getDeaths()), unique++)).setScore(score--);
-            if (score > TIP_SCORE) obj.getScore(uniqueLine(playerStatLine(scoreboardYouClaimsFormat, claimCount), unique++)).setScore(score--);
+            lines.add(scoreboardSeparatorLine);
+            lines.add(scoreboardYouTitle);
+            lines.add(playerStatLine(scoreboardYouKillsFormat, stats.getKills()));
+            lines.add(playerStatLine(scoreboardYouDeathsFormat, stats.getDeaths()));
+            lines.add(playerStatLine(scoreboardYouClaimsFormat, claimCount));
         }
 
-        obj.getScore(uniqueLine(scoreboardHideTip, unique++)).setScore(TIP_SCORE);
-        return board;
+        if (lines.size() > SidebarBoard.MAX_LINES - 1) lines.subList(SidebarBoard.MAX_LINES - 1, lines.size()).clear();
+        lines.add(scoreboardHideTip);
+        return lines;
     }
 
     private String playerStatLine(String format, int value) {
         return formatTemplate(format, "value", String.valueOf(value));
     }
 
-    private String uniqueLine(String line, int index) {
-        ChatColor suffix = SCOREBOARD_SUFFIXES[index % SCOREBOARD_SUFFIXES.length];
-        String base = line == null ? "" : line;
-        int maxBaseLength = 40 - suffix.toString().length();
-        if (base.length() > maxBaseLength) {
-            base = base.substring(0, maxBaseLength);
-            if (base.endsWith(String.valueOf(ChatColor.COLOR_CHAR))) {
-                base = base.substring(0, base.length() - 1);
-            }
-        }
-        return base + suffix;
-    }
-
     private String townLabel(Town t) {
         if (t == null) return "Unknown";
         ChatColor color = toBukkitColor(t.getColor());
@@ -2221,14 +2415,17 @@ public class TownManager {
         return hours + "h";
     }
 
+    // Chunks claimed before history existed get an EXISTING entry; the history thread does the region scan.
     private void bootstrapHistoryForExistingClaims() {
+        long now = System.currentTimeMillis();
+        Map<ChunkPos, ChunkHistoryEntry> entries = new HashMap<>();
         for (Town t : townsByOwner.values()) {
-            for (ChunkPos pos : t.getClaims()) {
-                if (!chunkHistory.containsKey(pos.id()) || chunkHistory.get(pos.id()).isEmpty()) {
-                    recordHistory(pos, "EXISTING", t);
-                }
-            }
+            if (t.getClaims().isEmpty()) continue;
+            // entries are immutable, so one per town is shared by its chunks
+            ChunkHistoryEntry entry = new ChunkHistoryEntry(now, "EXISTING", t.getName(), t.getOwner(), resolveColoredNames(t.getAllies()), resolveColoredNames(t.getWars()));
+            for (ChunkPos pos : t.getClaims()) entries.put(pos, entry);
         }
+        history.recordMissing(entries);
     }
 
     public static class PlayerStats {
@@ -2247,8 +2444,9 @@ public class TownManager {
             pruneExpiredPendingContests();
             boolean updated = updateContestTimers();
             pruneExpiredContestImmunity();
+            // contests that ended here marked LB_CONTESTS when they resolved; the rest only moved their timers
             if (!contestsById.isEmpty() || updated) {
-                refreshLeaderboardScoreboard();
+                markLeaderboardDirty(LB_CONTEST_TIMER);
             }
         }, 20L, 20L);
     }
@@ -2265,13 +2463,13 @@ public class TownManager {
         for (Player p : Bukkit.getOnlinePlayers()) {
             p.sendMessage(message);
         }
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_CONTESTS | LB_CLAIMS);
     }
 
     public void broadcastWarUpdate(String message) {
         for (Player p : Bukkit.getOnlinePlayers()) {
             p.sendMessage(message);
         }
-        refreshLeaderboardScoreboard();
+        markLeaderboardDirty(LB_ALL);
     }
 }
@@ -0,0 +1,32 @@
+package io.github.e1ixyz.visualclaims;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Backend that persists town snapshots and the plugin's other JSON documents (player stats, contests, contest
+// immunity). loadAll/loadDocument run on the main thread while nothing else uses the store; save/delete/
+// saveDocument/close run on the town writer's single I/O thread with private copies.
+public interface TownStore {
+    String describe();
+
+    // Every stored town, already normalized (TownManager.normalizeLoadedTown); owners whose stored form is outdated
+    // (e.g. another file format) or that normalization changed are added to rewrite.
+    List<Town> loadAll(Set<UUID> rewrite) throws IOException;
+
+    void save(Town snapshot) throws IOException;
+
+    void delete(UUID owner) throws IOException;
+
+    // Makes the store hold exactly these towns (migration target); anything stored before is dropped.
+    void replaceAll(Collection<Town> towns) throws IOException;
+
+    // The named document's JSON, or null when it was never saved.
+    String loadDocument(String name) throws IOException;
+
+    void saveDocument(String name, String json) throws IOException;
+
+    default void close() {}
+}
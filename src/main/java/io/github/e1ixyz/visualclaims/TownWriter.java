@@ -0,0 +1,212 @@
+package io.github.e1ixyz.visualclaims;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Write-behind persistence for towns through the configured TownStore. Mutations only mark a town dirty on the
+// main thread; a timer snapshots dirty towns and a single I/O thread hands private copies to the store.
+// Claim, member and diplomacy changes go to the claim journal instead and are folded into snapshots by compact().
+public class TownWriter {
+    private static final long FLUSH_INTERVAL_TICKS = 20L;
+    private static final long COMPACT_INTERVAL_TICKS = 5 * 60 * 20L;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private final VisualClaims plugin;
+    private final Function<UUID, Town> townLookup;
+    private final ExecutorService io;
+    private final ClaimJournal journal;
+    // owner -> town waiting for its next snapshot
+    private final Map<UUID, Town> dirty = new LinkedHashMap<>();
+    private TownStore store; // swapped on the main thread; queued writes keep the store they were queued for
+    private BukkitTask flushTask;
+    private long ticksSinceCompaction = 0L;
+    // owners whose latest snapshot failed to save (I/O thread only); the journal is kept until they save again
+    private final Set<UUID> failedSaves = new HashSet<>();
+
+    public TownWriter(VisualClaims plugin, TownStore store, File journalFile, Function<UUID, Town> townLookup) {
+        this.plugin = plugin;
+        this.store = store;
+        this.townLookup = townLookup;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "VisualClaims-TownWriter");
+            t.setDaemon(true);
+            return t;
+        });
+        this.journal = new ClaimJournal(plugin, journalFile, io);
+    }
+
+    public ClaimJournal journal() {
+        return journal;
+    }
+
+    public TownStore store() {
+        return store;
+    }
+
+    // Switches backends after every queued write to the old one; the old store is closed on the I/O thread.
+    public void useStore(TownStore next) {
+        flush();
+        TownStore previous = store;
+        store = next;
+        if (previous != null && previous != next) io.execute(previous::close);
+    }
+
+    // Runs work on the I/O thread after every write queued so far.
+    public void runIo(Runnable task) {
+        io.execute(task);
+    }
+
+    public void start() {
+        stop();
+        ticksSinceCompaction = 0L;
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, FLUSH_INTERVAL_TICKS, FLUSH_INTERVAL_TICKS);
+    }
+
+    private void tick() {
+        ticksSinceCompaction += FLUSH_INTERVAL_TICKS;
+        if (journal.shouldCompact() || (journal.hasRecords() && ticksSinceCompaction >= COMPACT_INTERVAL_TICKS)) {
+            compact();
+        } else {
+            flushDirty();
+        }
+    }
+
+    // Snapshots every town the journal touched, then truncates the journal behind those writes.
+    public void compact() {
+        ticksSinceCompaction = 0L;
+        for (UUID owner : journal.drainTouched()) markDirty(townLookup.apply(owner));
+        flushDirty();
+        io.execute(() -> {
+            // failed towns are retouched, so a later pass saves them again and can truncate
+            if (!failedSaves.isEmpty()) {
+                plugin.getLogger().warning("Keeping claim journal because " + failedSaves.size() + " town snapshot(s) failed to save.");
+                return;
+            }
+            journal.truncate();
+        });
+    }
+
+    public void stop() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+    }
+
+    public void markDirty(Town t) {
+        if (t == null || t.getOwner() == null) return;
+        dirty.put(t.getOwner(), t);
+    }
+
+    // Drops any pending snapshot and deletes the stored town in queue order, so an older write cannot resurrect it.
+    public void delete(UUID owner) {
+        dirty.remove(owner);
+        TownStore target = store;
+        io.execute(() -> {
+            try {
+                target.delete(owner);
+                failedSaves.remove(owner);
+            } catch (Exception ex) {
+                plugin.getLogger().warning("Failed to delete town " + owner + ": " + ex.getMessage());
+            }
+        });
+    }
+
+    // Snapshots every dirty town on the calling (main) thread and queues the writes. The snapshot is a binary
+    // encoding, so the I/O thread works on its own decoded copy rather than the live Town.
+    public void flushDirty() {
+        if (dirty.isEmpty()) return;
+        long seq = journal.lastSeq();
+        TownStore target = store;
+        for (Town t : dirty.values()) {
+            t.setJournalSeq(seq);
+            byte[] data;
+            try {
+                data = TownBinaryCodec.encode(t);
+            } catch (Exception ex) {
+                plugin.getLogger().severe("Failed to serialize town " + t.getName() + ": " + ex.getMessage());
+                continue;
+            }
+            String name = t.getName();
+            UUID owner = t.getOwner();
+            io.execute(() -> {
+                try {
+                    target.save(TownBinaryCodec.decode(new ByteArrayInputStream(data)));
+                    failedSaves.remove(owner);
+                } catch (Exception ex) {
+                    plugin.getLogger().severe("Failed to save town " + name + ": " + ex.getMessage());
+                    failedSaves.add(owner);
+                    if (plugin.isEnabled()) Bukkit.getScheduler().runTask(plugin, () -> journal.retouch(owner));
+                }
+            });
+        }
+        dirty.clear();
+    }
+
+    // Flush barrier: returns once every write queued so far has reached disk.
+    public void flush() {
+        flushDirty();
+        Future<?> barrier = io.submit(() -> { });
+        try {
+            barrier.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            plugin.getLogger().severe("Timed out waiting for town saves: " + ex.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        stop();
+        flushDirty();
+        io.execute(journal::close);
+        TownStore last = store;
+        io.execute(last::close);
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Town writer did not finish within " + SHUTDOWN_TIMEOUT_SECONDS + "s; some towns may not be saved.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Queues an already serialized document (e.g. player stats) for the current store on the I/O thread.
+    public void saveDocument(String name, String json, String what) {
+        TownStore target = store;
+        io.execute(() -> {
+            try {
+                target.saveDocument(name, json);
+            } catch (Exception ex) {
+                plugin.getLogger().severe("Failed to save " + what + ": " + ex.getMessage());
+            }
+        });
+    }
+
+    static void moveIntoPlace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
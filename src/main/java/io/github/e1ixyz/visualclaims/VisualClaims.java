@@ -4,32 +4,55 @@ import org.bukkit.Bukkit;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 public class VisualClaims extends JavaPlugin {
     private static VisualClaims instance;
     private TownManager townManager;
     private DynmapHook dynmapHook;
+    private final List<MapRenderer> renderers = new ArrayList<>();
     private MoveListener moveListener;
     private CombatListener combatListener;
     private ClaimProtectionListener claimProtectionListener;
+    private volatile ClaimsConfig settings;
 
     @Override
     public void onEnable() {
         instance = this;
         saveDefaultConfig();
+        settings = ClaimsConfig.from(getConfig());
 
         // Ensure data folder exists
         if (!getDataFolder().exists()) getDataFolder().mkdirs();
 
-        // Dynmap hook (plugin requires dynmap; plugin.yml marked depend)
-        dynmapHook = new DynmapHook(this);
-        if (!dynmapHook.hook()) {
-            getLogger().warning("Dynmap not found or failed to hook. Dynmap features disabled.");
+        // Map renderers; Dynmap is optional (softdepend), so its classes are only touched when it is installed
+        renderers.clear();
+        if (Bukkit.getPluginManager().getPlugin("dynmap") != null) {
+            DynmapHook hook = new DynmapHook(this);
+            if (hook.hook()) {
+                hook.start();
+                dynmapHook = hook;
+                renderers.add(hook);
+            } else {
+                getLogger().warning("Failed to hook Dynmap. Dynmap features disabled.");
+            }
+        } else {
+            getLogger().info("Dynmap not found. Dynmap features disabled.");
+        }
+        if (settings.geojsonExport()) {
+            GeoJsonExporter exporter = new GeoJsonExporter(this, new File(getDataFolder(), "geojson"));
+            exporter.start(settings.geojsonIntervalTicks());
+            renderers.add(exporter);
         }
 
         // Town manager (loads towns)
-        townManager = new TownManager(this, dynmapHook);
+        townManager = new TownManager(this, renderers);
         townManager.loadAll();
         townManager.startContestTicker();
+        townManager.startPlaytimeTracking();
+        townManager.startStorage();
 
         // Register command handler
         CommandHandler handler = new CommandHandler(this, townManager);
@@ -67,6 +90,8 @@ public class VisualClaims extends JavaPlugin {
         registerCommand("silentvisit", handler);
         registerCommand("claimreload", handler);
         registerCommand("trimoutposts", handler);
+        registerCommand("claimbench", handler);
+        registerCommand("claimmigrate", handler);
         registerCommand("warmode", handler);
 
         // Move listener
@@ -84,18 +109,36 @@ public class VisualClaims extends JavaPlugin {
     public void onDisable() {
         if (townManager != null) {
             townManager.stopContestTicker();
+            townManager.stopPlaytimeTracking();
             townManager.saveAll();
+            townManager.shutdownStorage();
         }
-        if (dynmapHook != null) dynmapHook.clearAll();
+        for (MapRenderer r : renderers) r.shutdown();
+        renderers.clear();
+        dynmapHook = null;
         getLogger().info("VisualClaims disabled.");
     }
 
     public static VisualClaims get() { return instance; }
 
     public DynmapHook getDynmapHook() { return dynmapHook; }
+    public List<MapRenderer> getRenderers() { return renderers; }
     public TownManager getTownManager() { return townManager; }
     public MoveListener getMoveListener() { return moveListener; }
     public CombatListener getCombatListener() { return combatListener; }
+    public ClaimsConfig getSettings() { return settings; }
+
+    public void reloadSettings() {
+        reloadConfig();
+        settings = ClaimsConfig.from(getConfig());
+    }
+
+    // Records a live storage switch in config.yml so the next start and /claimreload keep using it.
+    public void setStorageBackend(String backend) {
+        getConfig().set("storage-backend", backend);
+        saveConfig();
+        settings = ClaimsConfig.from(getConfig());
+    }
 
     private void registerCommand(String name, CommandHandler handler) {
         PluginCommand command = getCommand(name);